@@ -0,0 +1,178 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.cache;
+
+import com.kumuluz.ee.jwt.auth.validator.ValidationResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of recently rejected tokens, so tokens which are sent over and over are rejected without being
+ * validated again. Tokens are stored as SHA-256 fingerprints and each entry is dropped after a fixed time to live.
+ * Since all entries live equally long, the oldest entry is evicted when the cache is full.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class RejectedTokenCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final int DEFAULT_TIME_TO_LIVE_SECONDS = 60;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+    });
+
+    private final int maxSize;
+    private final long timeToLive;
+    private final Map<ByteBuffer, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RejectedTokenCache(int maxSize, long timeToLive, TimeUnit unit) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Rejected token cache size must be greater than 0.");
+        }
+        if (timeToLive <= 0) {
+            throw new IllegalArgumentException("Rejected token cache time to live must be greater than 0.");
+        }
+
+        this.maxSize = maxSize;
+        this.timeToLive = unit.toMillis(timeToLive);
+        this.entries = new LinkedHashMap<ByteBuffer, Entry>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+                return size() > RejectedTokenCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the rejection of a recently rejected token or {@code null} if the token was not rejected recently.
+     *
+     * @param token raw token
+     * @return result the token was rejected with or {@code null}
+     */
+    public ValidationResult get(String token) {
+        ByteBuffer fingerprint = fingerprint(token);
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(fingerprint);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(fingerprint);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.rejection;
+    }
+
+    /**
+     * Remembers the rejection of a token for the configured time to live.
+     *
+     * @param token     raw token
+     * @param rejection result the token was rejected with
+     */
+    public void put(String token, ValidationResult rejection) {
+        ByteBuffer fingerprint = fingerprint(token);
+        Entry entry = new Entry(rejection, System.currentTimeMillis() + timeToLive);
+
+        synchronized (entries) {
+            // re-inserted so that the insertion order stays the expiration order
+            entries.remove(fingerprint);
+            entries.put(fingerprint, entry);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return time to live of an entry in milliseconds
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return ratio of lookups answered from the cache, 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long lookupCount = hitCount + misses.get();
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+
+    private static ByteBuffer fingerprint(String token) {
+        return ByteBuffer.wrap(DIGEST.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class Entry {
+
+        private final ValidationResult rejection;
+        private final long expiresAt;
+
+        Entry(ValidationResult rejection, long expiresAt) {
+            this.rejection = rejection;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.cache;
+
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of already verified tokens. Each entry is dropped once the token expires (including the configured
+ * leeway). {@link com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo} clears the cache when the validation settings change
+ * or when a reloaded key set adds, removes or replaces keys. Cached principals are still returned while the key set
+ * can't be refreshed, as long as their tokens haven't expired.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class TokenCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final int maxSize;
+    private final EvictionPolicy evictionPolicy;
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TokenCache(int maxSize, EvictionPolicy evictionPolicy) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Token cache size must be greater than 0.");
+        }
+
+        this.maxSize = maxSize;
+        this.evictionPolicy = evictionPolicy;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, evictionPolicy == EvictionPolicy.LRU) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > TokenCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the principal of a previously verified token or {@code null} if the token is not cached or has expired.
+     *
+     * @param token raw token
+     * @return cached principal or {@code null}
+     */
+    public JWTPrincipal get(String token) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(token);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(token);
+                entry = null;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return entry.principal;
+    }
+
+    /**
+     * Caches the principal of a verified token.
+     *
+     * @param token     raw token
+     * @param principal principal created for the token
+     * @param expiresAt time in milliseconds after which the entry must no longer be returned
+     */
+    public void put(String token, JWTPrincipal principal, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+
+        synchronized (entries) {
+            entries.put(token, new Entry(principal, expiresAt));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public EvictionPolicy getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private static class Entry {
+
+        private final JWTPrincipal principal;
+        private final long expiresAt;
+
+        Entry(JWTPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.cdi;
+
+import com.kumuluz.ee.jwt.auth.principal.ClaimPath;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.eclipse.microprofile.jwt.Claim;
+import org.eclipse.microprofile.jwt.ClaimValue;
+import org.eclipse.microprofile.jwt.Claims;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.SessionScoped;
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.DeploymentException;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.inject.Provider;
+import javax.json.JsonValue;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+/**
+ * Claim name and validation result of a {@link Claim} injection point, resolved once per injection point. Claim names
+ * starting with a slash are JSON pointers to nested claims (e.g. {@code @Claim("/realm_access/roles")}), which are
+ * compiled here as well.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ClaimDescriptor {
+
+    private final String claimName;
+    private final ClaimPath claimPath;
+    private final String error;
+    private final boolean deploymentError;
+
+    private ClaimDescriptor(String claimName, String error, boolean deploymentError) {
+        this(claimName, null, error, deploymentError);
+    }
+
+    private ClaimDescriptor(String claimName, ClaimPath claimPath, String error, boolean deploymentError) {
+        this.claimName = claimName;
+        this.claimPath = claimPath;
+        this.error = error;
+        this.deploymentError = deploymentError;
+    }
+
+    /**
+     * Resolves the descriptor of an injection point. Missing or ambiguous {@link Claim} parameters and injection of
+     * claim values (as opposed to {@link ClaimValue}, {@link Provider} or {@link Instance} wrappers) into
+     * {@link ApplicationScoped} and {@link SessionScoped} beans are deployment errors.
+     *
+     * @param injectionPoint injection point qualified with {@link Claim}
+     * @return descriptor
+     */
+    public static ClaimDescriptor of(InjectionPoint injectionPoint) {
+        Claim claimAnnotation = injectionPoint.getAnnotated().getAnnotation(Claim.class);
+        if (claimAnnotation == null) {
+            claimAnnotation = injectionPoint.getQualifiers().stream()
+                    .filter(Claim.class::isInstance)
+                    .map(Claim.class::cast)
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        if (claimAnnotation == null) {
+            return new ClaimDescriptor(null, "Injection point is not qualified with @Claim.", true);
+        }
+
+        String claimValue = claimAnnotation.value();
+        Claims claimStandard = claimAnnotation.standard();
+
+        if (claimValue.isEmpty() && claimStandard.equals(Claims.UNKNOWN)) {
+            return new ClaimDescriptor(null, "At least one parameter must be specified.", true);
+        }
+
+        if (!claimValue.isEmpty() && !claimStandard.equals(Claims.UNKNOWN)) {
+            return new ClaimDescriptor(null, "Ambiguous use of @Claim qualifier; only one of the parameters is allowed at any one time.", true);
+        }
+
+        String claimName = claimValue.isEmpty() ? claimStandard.name() : claimValue;
+
+        ClaimPath claimPath = null;
+        if (ClaimPath.isPointer(claimName)) {
+            try {
+                claimPath = ClaimPath.compile(claimName);
+            } catch (IllegalArgumentException e) {
+                return new ClaimDescriptor(claimName, e.getMessage(), true);
+            }
+        }
+
+        if (isInApplicationOrSessionScope(injectionPoint)) {
+            String error = "@Claim injection is not supported in @ApplicationScoped and @SessionScoped contexts.";
+            return new ClaimDescriptor(claimName, claimPath, error, !isWrapperType(injectionPoint.getType()));
+        }
+
+        return new ClaimDescriptor(claimName, claimPath, null, false);
+    }
+
+    public String getClaimName() {
+        return claimName;
+    }
+
+    /**
+     * @return compiled path if the claim name is a JSON pointer, null otherwise
+     */
+    public ClaimPath getClaimPath() {
+        return claimPath;
+    }
+
+    /**
+     * Reads the claim of this injection point.
+     *
+     * @param principal current token, may be null
+     * @return claim as JSON-P or null if the claim or the token is missing
+     */
+    public JsonValue getClaim(JsonWebToken principal) {
+        if (!(principal instanceof JWTPrincipal)) {
+            return null;
+        }
+
+        return claimPath != null
+                ? ((JWTPrincipal) principal).getClaimValue(claimPath)
+                : ((JWTPrincipal) principal).getClaimForInjection(claimName);
+    }
+
+    /**
+     * @return error message or null if the injection point is valid
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the error must fail the deployment
+     */
+    public boolean isDeploymentError() {
+        return deploymentError;
+    }
+
+    /**
+     * Throws the error of an invalid injection point.
+     *
+     * @throws DeploymentException if the injection point is invalid
+     */
+    public void validate() {
+        if (error != null) {
+            throw new DeploymentException(error);
+        }
+    }
+
+    static boolean isInApplicationOrSessionScope(InjectionPoint injectionPoint) {
+        Bean<?> bean = injectionPoint.getBean();
+        if (bean != null) {
+            return ApplicationScoped.class.equals(bean.getScope()) || SessionScoped.class.equals(bean.getScope());
+        }
+
+        if (injectionPoint.getMember() == null) {
+            return false;
+        }
+
+        Class<?> beanClass = injectionPoint.getMember().getDeclaringClass();
+        return beanClass.getAnnotation(ApplicationScoped.class) != null || beanClass.getAnnotation(SessionScoped.class) != null;
+    }
+
+    private static boolean isWrapperType(Type type) {
+        Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+        return ClaimValue.class.equals(rawType) || Provider.class.equals(rawType) || Instance.class.equals(rawType);
+    }
+}
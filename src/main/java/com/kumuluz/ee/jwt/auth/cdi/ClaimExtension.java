@@ -0,0 +1,179 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.cdi;
+
+import com.kumuluz.ee.jwt.auth.projection.ClaimBinder;
+import com.kumuluz.ee.jwt.auth.projection.ClaimBinders;
+import com.kumuluz.ee.jwt.auth.projection.ClaimProjection;
+import org.eclipse.microprofile.jwt.Claim;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.*;
+import java.lang.reflect.Member;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates {@link Claim} injection points and resolves their claim names at deployment, so producers don't have to
+ * reflect on injection points for every injected value. Registers {@link ClaimProjection} types as dependent beans
+ * bound to the current token.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ClaimExtension implements Extension {
+
+    private final Map<Object, ClaimDescriptor> descriptors = new ConcurrentHashMap<>();
+    private final Set<Class<?>> projectionTypes = new HashSet<>();
+
+    <T, X> void processInjectionPoint(@Observes ProcessInjectionPoint<T, X> event) {
+        InjectionPoint injectionPoint = event.getInjectionPoint();
+
+        String projectionError = getProjectionError(injectionPoint);
+        if (projectionError != null) {
+            event.addDefinitionError(new IllegalArgumentException(projectionError + " Injection point: " +
+                    injectionPoint));
+            return;
+        }
+
+        if (injectionPoint.getQualifiers().stream().noneMatch(Claim.class::isInstance)) {
+            return;
+        }
+
+        ClaimDescriptor descriptor = ClaimDescriptor.of(injectionPoint);
+        if (descriptor.isDeploymentError()) {
+            event.addDefinitionError(new IllegalArgumentException(descriptor.getError() + " Injection point: " +
+                    injectionPoint));
+            return;
+        }
+
+        Object key = getKey(injectionPoint);
+        if (key != null) {
+            descriptors.put(key, descriptor);
+        }
+    }
+
+    <T> void processProjectionType(@Observes @WithAnnotations(ClaimProjection.class) ProcessAnnotatedType<T> event) {
+        Class<T> type = event.getAnnotatedType().getJavaClass();
+
+        // projections are bound by the extension, not managed as beans
+        if (type.isAnnotationPresent(ClaimProjection.class)) {
+            projectionTypes.add(type);
+            event.veto();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    void registerProjections(@Observes AfterBeanDiscovery event, BeanManager beanManager) {
+        // projections with generated binders are registered even if they are not in a bean archive
+        for (ClaimBinder binder : ServiceLoader.load(ClaimBinder.class)) {
+            projectionTypes.add(binder.getType());
+        }
+
+        for (Class<?> type : projectionTypes) {
+            try {
+                addProjectionBean(event, beanManager, ClaimBinders.get(type));
+            } catch (IllegalArgumentException e) {
+                event.addDefinitionError(e);
+            }
+        }
+    }
+
+    private static <T> void addProjectionBean(AfterBeanDiscovery event, BeanManager beanManager, ClaimBinder<T> binder) {
+        event.<T>addBean()
+                .beanClass(binder.getType())
+                .types(binder.getType(), Object.class)
+                .scope(Dependent.class)
+                .createWith(context -> ClaimBinders.project(getPrincipal(beanManager, context), binder.getType()));
+    }
+
+    private static JsonWebToken getPrincipal(BeanManager beanManager, CreationalContext<?> context) {
+        Bean<?> bean = beanManager.resolve(beanManager.getBeans(JsonWebToken.class));
+        return (JsonWebToken) beanManager.getReference(bean, JsonWebToken.class, context);
+    }
+
+    /**
+     * Validates the injection point of a {@link ClaimProjection}. Projections are dependent beans bound to the token of
+     * the request they are created in, so injecting them (as opposed to {@link javax.inject.Provider} or
+     * {@link javax.enterprise.inject.Instance} wrappers) into {@link javax.enterprise.context.ApplicationScoped} and
+     * {@link javax.enterprise.context.SessionScoped} beans is a deployment error.
+     *
+     * @param injectionPoint injection point
+     * @return error message or null if the injection point is valid or not of a projection type
+     */
+    public static String getProjectionError(InjectionPoint injectionPoint) {
+        Type type = injectionPoint.getType();
+        Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+
+        if (!(rawType instanceof Class) || !((Class<?>) rawType).isAnnotationPresent(ClaimProjection.class) ||
+                !ClaimDescriptor.isInApplicationOrSessionScope(injectionPoint)) {
+            return null;
+        }
+
+        return "@ClaimProjection injection is not supported in @ApplicationScoped and @SessionScoped contexts.";
+    }
+
+    /**
+     * Returns the descriptor of an injection point, resolving it if the injection point was not processed at
+     * deployment (e.g. dynamic lookups).
+     *
+     * @param injectionPoint injection point qualified with {@link Claim}
+     * @return descriptor
+     */
+    public ClaimDescriptor getDescriptor(InjectionPoint injectionPoint) {
+        Object key = getKey(injectionPoint);
+        if (key == null) {
+            return ClaimDescriptor.of(injectionPoint);
+        }
+
+        ClaimDescriptor descriptor = descriptors.get(key);
+        if (descriptor == null) {
+            descriptor = ClaimDescriptor.of(injectionPoint);
+            descriptors.putIfAbsent(key, descriptor);
+        }
+
+        return descriptor;
+    }
+
+    private static Object getKey(InjectionPoint injectionPoint) {
+        Member member = injectionPoint.getMember();
+        if (member == null) {
+            return null;
+        }
+
+        // the bean is part of the key, as an inherited member may be injected into beans with different scopes
+        int position = injectionPoint.getAnnotated() instanceof AnnotatedParameter
+                ? ((AnnotatedParameter<?>) injectionPoint.getAnnotated()).getPosition()
+                : -1;
+        Class<?> beanClass = injectionPoint.getBean() != null ? injectionPoint.getBean().getBeanClass() : null;
+
+        return Arrays.asList(member, position, beanClass);
+    }
+}
@@ -20,23 +20,19 @@
  */
 package com.kumuluz.ee.jwt.auth.cdi;
 
-import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
 import org.eclipse.microprofile.jwt.Claim;
 import org.eclipse.microprofile.jwt.ClaimValue;
-import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
-import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.Dependent;
-import javax.enterprise.context.SessionScoped;
 import javax.enterprise.inject.Produces;
-import javax.enterprise.inject.spi.Bean;
-import javax.enterprise.inject.spi.DeploymentException;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.json.*;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -51,58 +47,35 @@ public class ClaimProducer {
     @Inject
     private JsonWebToken callerPrincipal;
 
+    @Inject
+    private Provider<JsonWebToken> principalProvider;
+
+    @Inject
+    private ClaimExtension claimExtension;
+
     // region Basic types - String, Set<String>, Long, Boolean
     @Produces
     @Claim
     public String getClaimAsString(InjectionPoint injectionPoint) {
-        JsonString claim = getClaim(injectionPoint);
-        if (claim == null) {
-            return null;
-        }
-
-        return claim.getString();
+        return asString(getClaim(injectionPoint));
     }
 
     @Produces
     @Claim
     public Set<String> getClaimAsStringSet(InjectionPoint injectionPoint) {
-        JsonArray claim = getClaim(injectionPoint);
-        if (claim == null) {
-            return null;
-        }
-
-        return claim.getValuesAs(JsonString.class)
-                .stream()
-                .map(JsonString::getString)
-                .collect(Collectors.toSet());
+        return asStringSet(getClaim(injectionPoint));
     }
 
     @Produces
     @Claim
     public Long getClaimAsLong(InjectionPoint injectionPoint) {
-        JsonNumber claim = getClaim(injectionPoint);
-        if (claim == null) {
-            return null;
-        }
-
-        return claim.longValue();
+        return asLong(getClaim(injectionPoint));
     }
 
     @Produces
     @Claim
     public Boolean getClaimAsBoolean(InjectionPoint injectionPoint) {
-        JsonValue claim = getClaim(injectionPoint);
-        if (claim == null) {
-            return null;
-        }
-
-        if (claim.getValueType().equals(JsonValue.ValueType.TRUE)) {
-            return Boolean.TRUE;
-        } else if (claim.getValueType().equals(JsonValue.ValueType.FALSE)) {
-            return Boolean.FALSE;
-        }
-
-        return null;
+        return asBoolean(getClaim(injectionPoint));
     }
     // endregion
 
@@ -196,77 +169,25 @@ public class ClaimProducer {
     @Produces
     @Claim
     public ClaimValue<String> getClaimAsClaimValueString(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        String claim = getClaimAsString(injectionPoint);
-
-        return new ClaimValue<String>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public String getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::asString);
     }
 
     @Produces
     @Claim
     public ClaimValue<Set<String>> getClaimAsClaimValueStringSet(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Set<String> claim = getClaimAsStringSet(injectionPoint);
-
-        return new ClaimValue<Set<String>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Set<String> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::asStringSet);
     }
 
     @Produces
     @Claim
     public ClaimValue<Long> getClaimAsClaimValueLong(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Long claim = getClaimAsLong(injectionPoint);
-
-        return new ClaimValue<Long>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Long getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::asLong);
     }
 
     @Produces
     @Claim
     public ClaimValue<Boolean> getClaimAsClaimValueBoolean(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Boolean claim = getClaimAsBoolean(injectionPoint);
-
-        return new ClaimValue<Boolean>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Boolean getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::asBoolean);
     }
     // endregion
 
@@ -274,77 +195,25 @@ public class ClaimProducer {
     @Produces
     @Claim
     public ClaimValue<JsonString> getClaimAsClaimValueJsonString(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        JsonString claim = getClaimAsJsonString(injectionPoint);
-
-        return new ClaimValue<JsonString>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public JsonString getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::<JsonString>cast);
     }
 
     @Produces
     @Claim
     public ClaimValue<JsonArray> getClaimAsClaimValueJsonArray(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        JsonArray claim = getClaimAsJsonArray(injectionPoint);
-
-        return new ClaimValue<JsonArray>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public JsonArray getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::<JsonArray>cast);
     }
 
     @Produces
     @Claim
     public ClaimValue<JsonNumber> getClaimAsClaimValueJsonNumber(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        JsonNumber claim = getClaimAsJsonNumber(injectionPoint);
-
-        return new ClaimValue<JsonNumber>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public JsonNumber getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::<JsonNumber>cast);
     }
 
     @Produces
     @Claim
     public ClaimValue<JsonObject> getClaimAsClaimValueJsonObject(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        JsonObject claim = getClaimAsJsonObject(injectionPoint);
-
-        return new ClaimValue<JsonObject>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public JsonObject getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, ClaimProducer::<JsonObject>cast);
     }
     // endregion
 
@@ -352,77 +221,25 @@ public class ClaimProducer {
     @Produces
     @Claim
     public ClaimValue<Optional<String>> getClaimAsClaimValueOptionalString(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<String> claim = getClaimAsOptionalString(injectionPoint);
-
-        return new ClaimValue<Optional<String>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<String> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(asString(claim)));
     }
 
     @Produces
     @Claim
     public ClaimValue<Optional<Set<String>>> getClaimAsClaimValueOptionalStringSet(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<Set<String>> claim = getClaimAsOptionalStringSet(injectionPoint);
-
-        return new ClaimValue<Optional<Set<String>>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<Set<String>> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(asStringSet(claim)));
     }
 
     @Produces
     @Claim
     public ClaimValue<Optional<Long>> getClaimAsClaimValueOptionalLong(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<Long> claim = getClaimAsOptionalLong(injectionPoint);
-
-        return new ClaimValue<Optional<Long>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<Long> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(asLong(claim)));
     }
 
     @Produces
     @Claim
     public ClaimValue<Optional<Boolean>> getClaimAsClaimValueOptionalBoolean(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<Boolean> claim = getClaimAsOptionalBoolean(injectionPoint);
-
-        return new ClaimValue<Optional<Boolean>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<Boolean> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(asBoolean(claim)));
     }
     // endregion
 
@@ -430,126 +247,85 @@ public class ClaimProducer {
     @Produces
     @Claim
     public ClaimValue<Optional<JsonString>> getClaimAsClaimValueOptionalJsonString(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<JsonString> claim = getClaimAsOptionalJsonString(injectionPoint);
-
-        return new ClaimValue<Optional<JsonString>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<JsonString> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(ClaimProducer.<JsonString>cast(claim)));
     }
 
     @Produces
     @Claim
     public ClaimValue<Optional<JsonArray>> getClaimAsClaimValueOptionalJsonArray(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<JsonArray> claim = getClaimAsOptionalJsonArray(injectionPoint);
-
-        return new ClaimValue<Optional<JsonArray>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<JsonArray> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(ClaimProducer.<JsonArray>cast(claim)));
     }
 
     @Produces
     @Claim
     public ClaimValue<Optional<JsonNumber>> getClaimAsClaimValueOptionalJsonNumber(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<JsonNumber> claim = getClaimAsOptionalJsonNumber(injectionPoint);
-
-        return new ClaimValue<Optional<JsonNumber>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<JsonNumber> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(ClaimProducer.<JsonNumber>cast(claim)));
     }
 
     @Produces
     @Claim
     public ClaimValue<Optional<JsonObject>> getClaimAsClaimValueOptionalJsonObject(InjectionPoint injectionPoint) {
-        String claimName = getClaimName(injectionPoint);
-        Optional<JsonObject> claim = getClaimAsOptionalJsonObject(injectionPoint);
-
-        return new ClaimValue<Optional<JsonObject>>() {
-            @Override
-            public String getName() {
-                return claimName;
-            }
-
-            @Override
-            public Optional<JsonObject> getValue() {
-                return claim;
-            }
-        };
+        return createClaimValue(injectionPoint, claim -> Optional.ofNullable(ClaimProducer.<JsonObject>cast(claim)));
     }
     // endregion
 
+    @SuppressWarnings("unchecked")
     private <T> T getClaim(InjectionPoint injectionPoint) {
-        validateClaim(injectionPoint);
-        String claimName = getClaimName(injectionPoint);
-        return callerPrincipal != null
-                ? ((JWTPrincipal) callerPrincipal).getClaimForInjection(claimName)
-                : null;
-    }
-
-    private void validateClaim(InjectionPoint injectionPoint) {
-        Class beanClass;
-        Bean bean = injectionPoint.getBean();
-        if (bean == null) {
-            beanClass = injectionPoint.getMember().getDeclaringClass();
-        } else {
-            beanClass = bean.getBeanClass();
-        }
+        ClaimDescriptor descriptor = claimExtension.getDescriptor(injectionPoint);
+        descriptor.validate();
+        return (T) descriptor.getClaim(callerPrincipal);
+    }
 
-        if (beanClass.getAnnotation(ApplicationScoped.class) != null || beanClass.getAnnotation(SessionScoped.class) != null) {
-            throw new DeploymentException("@Claim injection is not supported in @ApplicationScoped and @SessionScoped contexts.");
-        }
+    /**
+     * Creates a claim value which is resolved against the current request's token only when it is read.
+     */
+    private <T> ClaimValue<T> createClaimValue(InjectionPoint injectionPoint, Function<JsonValue, T> converter) {
+        return new LazyClaimValue<>(claimExtension.getDescriptor(injectionPoint), principalProvider, converter);
+    }
 
-        Claim claimAnnotation = injectionPoint.getAnnotated().getAnnotation(Claim.class);
+    private static String asString(JsonValue claim) {
+        if (claim == null) {
+            return null;
+        }
 
-        String claimValue = claimAnnotation.value();
-        Claims claimStandard = claimAnnotation.standard();
+        return ((JsonString) claim).getString();
+    }
 
-        if (claimValue.isEmpty() && claimStandard.equals(Claims.UNKNOWN)) {
-            throw new DeploymentException("At least one parameter must be specified.");
+    private static Set<String> asStringSet(JsonValue claim) {
+        if (claim == null) {
+            return null;
         }
 
-        if (!claimValue.isEmpty() && !claimStandard.equals(Claims.UNKNOWN)) {
-            throw new DeploymentException("Ambiguous use of @Claim qualifier; only one of the parameters is allowed at any one time.");
-        }
+        return ((JsonArray) claim).getValuesAs(JsonString.class)
+                .stream()
+                .map(JsonString::getString)
+                .collect(Collectors.toSet());
     }
 
-    private String getClaimName(InjectionPoint injectionPoint) {
-        Claim claimAnnotation = injectionPoint.getAnnotated().getAnnotation(Claim.class);
+    private static Long asLong(JsonValue claim) {
+        if (claim == null) {
+            return null;
+        }
+
+        return ((JsonNumber) claim).longValue();
+    }
 
-        String claimValue = claimAnnotation.value();
-        Claims claimStandard = claimAnnotation.standard();
+    private static Boolean asBoolean(JsonValue claim) {
+        if (claim == null) {
+            return null;
+        }
 
-        String claimName = claimValue;
-        if (claimName.isEmpty()) {
-            claimName = claimStandard.name();
+        if (claim.getValueType().equals(JsonValue.ValueType.TRUE)) {
+            return Boolean.TRUE;
+        } else if (claim.getValueType().equals(JsonValue.ValueType.FALSE)) {
+            return Boolean.FALSE;
         }
 
-        return claimName;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends JsonValue> T cast(JsonValue claim) {
+        return (T) claim;
     }
 }
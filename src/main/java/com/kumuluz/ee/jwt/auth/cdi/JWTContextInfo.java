@@ -25,19 +25,39 @@ import com.auth0.jwt.interfaces.RSAKeyProvider;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.jwt.auth.cache.EvictionPolicy;
+import com.kumuluz.ee.jwt.auth.cache.RejectedTokenCache;
+import com.kumuluz.ee.jwt.auth.cache.TokenCache;
+import com.kumuluz.ee.jwt.auth.helper.CircuitBreaker;
 import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import com.kumuluz.ee.jwt.auth.helper.ManagedRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.OidcDiscoveryKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.PublicKeyCache;
+import com.kumuluz.ee.jwt.auth.helper.ValidationExecutors;
+import com.kumuluz.ee.jwt.auth.principal.ClaimPath;
+import com.kumuluz.ee.jwt.auth.validator.JWTVerifierRegistry;
+import com.kumuluz.ee.jwt.auth.validator.ValidationMetrics;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.security.KeyFactory;
+import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -58,23 +78,111 @@ public class JWTContextInfo {
     private static final String KUMULUZ_CONFIG_PUBLIC_KEY = "kumuluzee.jwt-auth.public-key";
 
     private static final String DEFAULT_LEEWAY_SECONDS = "60";
+    private static final int DEFAULT_DISCOVERY_REFRESH_INTERVAL_SECONDS = 3600;
+    private static final int DEFAULT_MAX_TOKEN_SIZE = 16384;
+    private static final int DEFAULT_ASYNC_POOL_SIZE = 10;
+    private static final int DEFAULT_ASYNC_QUEUE_SIZE = 1000;
 
     private RSAPublicKey publicKeyDecoded;
 
     private String jwksUri;
     private JwkProvider jwkProvider;
     private RSAKeyProvider rsaKeyProvider;
+    private int jwksRefreshInterval;
+    private int jwksMaxStaleness;
+    private int jwksMinRefetchInterval = (int) JwksRSAKeyProviderBuilder.DEFAULT_MIN_REFETCH_INTERVAL_SECONDS;
+    private String jwksSnapshotFile;
+    private int jwksConnectTimeout = JwksRSAKeyProviderBuilder.DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int jwksReadTimeout = JwksRSAKeyProviderBuilder.DEFAULT_READ_TIMEOUT_MILLIS;
+    private int jwksFailureThreshold = JwksRSAKeyProviderBuilder.DEFAULT_FAILURE_THRESHOLD;
+    private int jwksOpenDuration = (int) JwksRSAKeyProviderBuilder.DEFAULT_OPEN_DURATION_SECONDS;
+
+    private boolean discoveryEnabled;
+    private int discoveryRefreshInterval = DEFAULT_DISCOVERY_REFRESH_INTERVAL_SECONDS;
 
     private String issuer;
 
     private int maximumLeeway;
 
+    private ClaimPath groupsClaimPath;
+
+    private Set<String> audiences;
+
+    private int maxTokenSize = DEFAULT_MAX_TOKEN_SIZE;
+
+    private TokenCache tokenCache;
+
+    private RejectedTokenCache rejectedTokenCache;
+
+    private boolean asyncEnabled;
+
+    private boolean lazyEnabled;
+
+    private Executor validationExecutor;
+
+    private ExecutorService ownValidationExecutor;
+
+    private final JWTVerifierRegistry verifierRegistry = new JWTVerifierRegistry();
+
+    private final ValidationMetrics validationMetrics = new ValidationMetrics();
+
     @PostConstruct
     public void init() {
         ConfigurationUtil config = ConfigurationUtil.getInstance();
 
         issuer = config.get("mp.jwt.verify.issuer").orElse(config.get("kumuluzee.jwt-auth.issuer").orElse(null));
         maximumLeeway = Integer.parseInt(config.get("kumuluzee.jwt-auth.maximum-leeway").orElse(DEFAULT_LEEWAY_SECONDS));
+        groupsClaimPath = config.get("kumuluzee.jwt-auth.groups-claim").map(ClaimPath::compile).orElse(null);
+        String audienceList = config.get("mp.jwt.verify.audiences")
+                .orElse(config.get("kumuluzee.jwt-auth.audiences").orElse(null));
+        if (audienceList != null) {
+            audiences = Arrays.stream(audienceList.split(","))
+                    .map(String::trim)
+                    .filter(audience -> !audience.isEmpty())
+                    .collect(Collectors.toSet());
+        }
+        maxTokenSize = config.getInteger("kumuluzee.jwt-auth.max-token-size").orElse(maxTokenSize);
+
+        jwksRefreshInterval = config.getInteger("kumuluzee.jwt-auth.jwks.refresh-interval").orElse(0);
+        jwksMaxStaleness = config.getInteger("kumuluzee.jwt-auth.jwks.max-staleness").orElse(0);
+        jwksMinRefetchInterval = config.getInteger("kumuluzee.jwt-auth.jwks.min-refetch-interval")
+                .orElse(jwksMinRefetchInterval);
+        jwksSnapshotFile = config.get("kumuluzee.jwt-auth.jwks.snapshot-file").orElse(null);
+        discoveryEnabled = config.getBoolean("kumuluzee.jwt-auth.discovery.enabled").orElse(false);
+        discoveryRefreshInterval = config.getInteger("kumuluzee.jwt-auth.discovery.refresh-interval")
+                .orElse(discoveryRefreshInterval);
+        jwksConnectTimeout = config.getInteger("kumuluzee.jwt-auth.jwks.connect-timeout").orElse(jwksConnectTimeout);
+        jwksReadTimeout = config.getInteger("kumuluzee.jwt-auth.jwks.read-timeout").orElse(jwksReadTimeout);
+        jwksFailureThreshold = config.getInteger("kumuluzee.jwt-auth.jwks.circuit-breaker.failure-threshold")
+                .orElse(jwksFailureThreshold);
+        jwksOpenDuration = config.getInteger("kumuluzee.jwt-auth.jwks.circuit-breaker.open-duration")
+                .orElse(jwksOpenDuration);
+
+        if (config.getBoolean("kumuluzee.jwt-auth.token-cache.enabled").orElse(false)) {
+            tokenCache = new TokenCache(
+                    config.getInteger("kumuluzee.jwt-auth.token-cache.max-size").orElse(TokenCache.DEFAULT_MAX_SIZE),
+                    EvictionPolicy.valueOf(config.get("kumuluzee.jwt-auth.token-cache.eviction-policy")
+                            .orElse(EvictionPolicy.LRU.name()).toUpperCase()));
+        }
+
+        if (config.getBoolean("kumuluzee.jwt-auth.rejected-token-cache.enabled").orElse(false)) {
+            rejectedTokenCache = new RejectedTokenCache(
+                    config.getInteger("kumuluzee.jwt-auth.rejected-token-cache.max-size")
+                            .orElse(RejectedTokenCache.DEFAULT_MAX_SIZE),
+                    config.getInteger("kumuluzee.jwt-auth.rejected-token-cache.time-to-live")
+                            .orElse(RejectedTokenCache.DEFAULT_TIME_TO_LIVE_SECONDS),
+                    TimeUnit.SECONDS);
+        }
+
+        lazyEnabled = config.getBoolean("kumuluzee.jwt-auth.lazy.enabled").orElse(false);
+        asyncEnabled = config.getBoolean("kumuluzee.jwt-auth.async.enabled").orElse(false);
+        if (asyncEnabled) {
+            ownValidationExecutor = ValidationExecutors.newExecutor(
+                    config.getBoolean("kumuluzee.jwt-auth.async.virtual-threads").orElse(true),
+                    config.getInteger("kumuluzee.jwt-auth.async.pool-size").orElse(DEFAULT_ASYNC_POOL_SIZE),
+                    config.getInteger("kumuluzee.jwt-auth.async.queue-size").orElse(DEFAULT_ASYNC_QUEUE_SIZE));
+            validationExecutor = ownValidationExecutor;
+        }
 
         final List<String> publickeyChildKeys = config.getMapKeys(MP_CONFIG_PUBLIC_KEY).orElse(null);
         String keyLocation = publickeyChildKeys != null && publickeyChildKeys.contains("location") ? config.get(MP_CONFIG_PUBLIC_KEY + ".location").orElse(null) : null;
@@ -82,7 +190,11 @@ public class JWTContextInfo {
 
         //jwks url
         if (keyLocation != null && keyLocation.endsWith(DEFAULT_JWKS_PATH)) {
-            jwkProvider = new UrlJwkProvider(keyLocation.replace(DEFAULT_JWKS_PATH, ""));
+            try {
+                rsaKeyProvider = createJwksProvider(new URL(keyLocation.startsWith("http") ? keyLocation : "https://" + keyLocation));
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("The provided mp.jwt.verify.publickey.location is not a valid URL.", e);
+            }
             LOG.fine(() -> "Loaded JWKS key from " + keyLocation);
             return;
         }
@@ -136,13 +248,137 @@ public class JWTContextInfo {
         initJwks();
     }
 
+    /**
+     * Creates the key provider for the configured JWKS URI or, if discovery is enabled, for the issuer. A previously
+     * created key provider is closed, so it stops refreshing its keys, and verifiers and cached principals, which may
+     * have been obtained with its keys, are dropped together with cached rejections.
+     */
     public void initJwks() {
+        if (rsaKeyProvider instanceof ManagedRSAKeyProvider) {
+            ((ManagedRSAKeyProvider) rsaKeyProvider).close();
+            rsaKeyProvider = null;
+        }
+        verifierRegistry.invalidate();
+        clearCaches();
+
         if (jwksUri != null) {
             try {
-                rsaKeyProvider = new JwksRSAKeyProvider(new URL(jwksUri));
+                rsaKeyProvider = createJwksProvider(new URL(jwksUri));
             } catch (MalformedURLException e) {
                 throw new IllegalArgumentException("The provided kumuluzee.jwt-auth.jwks-uri is not a valid URL.", e);
             }
+        } else if (discoveryEnabled && jwkProvider == null && publicKeyDecoded == null) {
+            if (issuer == null) {
+                throw new IllegalArgumentException("OpenID Connect discovery requires the issuer to be configured.");
+            }
+
+            rsaKeyProvider = new OidcDiscoveryKeyProvider(issuer,
+                    TimeUnit.SECONDS.toMillis(discoveryRefreshInterval), jwksConnectTimeout, jwksReadTimeout,
+                    this::createJwksProvider);
+        }
+    }
+
+    /**
+     * Fetches the JWKS keys at startup if {@code kumuluzee.jwt-auth.jwks.prefetch} is enabled. The observer is static,
+     * so the context is not initialized at startup otherwise.
+     */
+    static void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event, JWTContextInfo jwtContextInfo) {
+        if (ConfigurationUtil.getInstance().getBoolean("kumuluzee.jwt-auth.jwks.prefetch").orElse(false)) {
+            jwtContextInfo.prefetchKeys();
+        }
+    }
+
+    /**
+     * Fetches and decodes the JWKS keys, if keys are provided by a JWKS.
+     *
+     * @return false if the keys couldn't be fetched
+     */
+    public boolean prefetchKeys() {
+        if (rsaKeyProvider instanceof ManagedRSAKeyProvider) {
+            LOG.info("Prefetching JWKS keys.");
+            return ((ManagedRSAKeyProvider) rsaKeyProvider).prefetch();
+        }
+
+        return true;
+    }
+
+    /**
+     * Fetches the JWKS keys in the background, if keys are provided by a JWKS. Fetches are coalesced and throttled, so
+     * this may be called for every request which can't be validated before the keys are loaded.
+     */
+    public void refreshKeysInBackground() {
+        if (rsaKeyProvider instanceof ManagedRSAKeyProvider) {
+            ((ManagedRSAKeyProvider) rsaKeyProvider).refreshInBackground();
+        }
+    }
+
+    /**
+     * Returns whether keys needed to verify tokens are loaded. Keys provided by a JWKS are loaded lazily (unless
+     * prefetched) or in the background, other keys are loaded during initialization.
+     *
+     * @return true if keys are loaded
+     */
+    public boolean isReady() {
+        if (rsaKeyProvider instanceof ManagedRSAKeyProvider) {
+            return ((ManagedRSAKeyProvider) rsaKeyProvider).isReady();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the circuit breaker guarding JWKS fetches, e.g. to expose its state and transitions as metrics.
+     *
+     * @return circuit breaker or null if keys are not provided by a JWKS (or the JWKS has not been discovered yet)
+     */
+    public CircuitBreaker getJwksCircuitBreaker() {
+        if (rsaKeyProvider instanceof ManagedRSAKeyProvider) {
+            return ((ManagedRSAKeyProvider) rsaKeyProvider).getCircuitBreaker();
+        }
+
+        return null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (rsaKeyProvider instanceof ManagedRSAKeyProvider) {
+            ((ManagedRSAKeyProvider) rsaKeyProvider).close();
+        }
+        if (ownValidationExecutor != null) {
+            ownValidationExecutor.shutdownNow();
+        }
+    }
+
+    private JwksRSAKeyProvider createJwksProvider(URL url) {
+        return new JwksRSAKeyProviderBuilder(url)
+                .refreshInterval(jwksRefreshInterval, TimeUnit.SECONDS)
+                .maxStaleness(jwksMaxStaleness, TimeUnit.SECONDS)
+                .minRefetchInterval(jwksMinRefetchInterval, TimeUnit.SECONDS)
+                .snapshotFile(jwksSnapshotFile != null ? Paths.get(jwksSnapshotFile) : null)
+                .timeouts(jwksConnectTimeout, jwksReadTimeout, TimeUnit.MILLISECONDS)
+                .circuitBreaker(jwksFailureThreshold, jwksOpenDuration, TimeUnit.SECONDS)
+                .keySetListener(this::onKeySetChange)
+                .build();
+    }
+
+    /**
+     * Drops verifiers of keys which were removed from or replaced in the key set and cached validation results, which
+     * may have been obtained with such keys.
+     */
+    private void onKeySetChange(Map<String, RSAPublicKey> publicKeys) {
+        verifierRegistry.retain(publicKeys);
+        clearCaches();
+    }
+
+    /**
+     * Drops cached validation results, which may not hold for the changed settings.
+     */
+    private void clearCaches() {
+        if (tokenCache != null) {
+            tokenCache.clear();
+        }
+        if (rejectedTokenCache != null) {
+            rejectedTokenCache.clear();
         }
     }
 
@@ -150,6 +386,11 @@ public class JWTContextInfo {
         return publicKeyDecoded;
     }
 
+    public void setDecodedPublicKey(RSAPublicKey publicKeyDecoded) {
+        this.publicKeyDecoded = publicKeyDecoded;
+        clearCaches();
+    }
+
     public String getJwksUri() {
         return jwksUri;
     }
@@ -166,12 +407,93 @@ public class JWTContextInfo {
         return rsaKeyProvider;
     }
 
+    public int getJwksRefreshInterval() {
+        return jwksRefreshInterval;
+    }
+
+    public void setJwksRefreshInterval(int jwksRefreshInterval) {
+        this.jwksRefreshInterval = jwksRefreshInterval;
+    }
+
+    public int getJwksMaxStaleness() {
+        return jwksMaxStaleness;
+    }
+
+    public void setJwksMaxStaleness(int jwksMaxStaleness) {
+        this.jwksMaxStaleness = jwksMaxStaleness;
+    }
+
+    public int getJwksMinRefetchInterval() {
+        return jwksMinRefetchInterval;
+    }
+
+    public void setJwksMinRefetchInterval(int jwksMinRefetchInterval) {
+        this.jwksMinRefetchInterval = jwksMinRefetchInterval;
+    }
+
+    public String getJwksSnapshotFile() {
+        return jwksSnapshotFile;
+    }
+
+    public void setJwksSnapshotFile(String jwksSnapshotFile) {
+        this.jwksSnapshotFile = jwksSnapshotFile;
+    }
+
+    public int getJwksConnectTimeout() {
+        return jwksConnectTimeout;
+    }
+
+    public void setJwksConnectTimeout(int jwksConnectTimeout) {
+        this.jwksConnectTimeout = jwksConnectTimeout;
+    }
+
+    public int getJwksReadTimeout() {
+        return jwksReadTimeout;
+    }
+
+    public void setJwksReadTimeout(int jwksReadTimeout) {
+        this.jwksReadTimeout = jwksReadTimeout;
+    }
+
+    public int getJwksFailureThreshold() {
+        return jwksFailureThreshold;
+    }
+
+    public void setJwksFailureThreshold(int jwksFailureThreshold) {
+        this.jwksFailureThreshold = jwksFailureThreshold;
+    }
+
+    public int getJwksOpenDuration() {
+        return jwksOpenDuration;
+    }
+
+    public void setJwksOpenDuration(int jwksOpenDuration) {
+        this.jwksOpenDuration = jwksOpenDuration;
+    }
+
+    public boolean isDiscoveryEnabled() {
+        return discoveryEnabled;
+    }
+
+    public void setDiscoveryEnabled(boolean discoveryEnabled) {
+        this.discoveryEnabled = discoveryEnabled;
+    }
+
+    public int getDiscoveryRefreshInterval() {
+        return discoveryRefreshInterval;
+    }
+
+    public void setDiscoveryRefreshInterval(int discoveryRefreshInterval) {
+        this.discoveryRefreshInterval = discoveryRefreshInterval;
+    }
+
     public String getIssuer() {
         return issuer;
     }
 
     public void setIssuer(String issuer) {
         this.issuer = issuer;
+        clearCaches();
     }
 
     public int getMaximumLeeway() {
@@ -180,11 +502,106 @@ public class JWTContextInfo {
 
     public void setMaximumLeeway(int maximumLeeway) {
         this.maximumLeeway = maximumLeeway;
+        clearCaches();
+    }
+
+    /**
+     * @return path of the claim holding the groups or null if the <i>groups</i> claim is used
+     */
+    public ClaimPath getGroupsClaimPath() {
+        return groupsClaimPath;
+    }
+
+    public void setGroupsClaimPath(ClaimPath groupsClaimPath) {
+        this.groupsClaimPath = groupsClaimPath;
+        clearCaches();
+    }
+
+    /**
+     * @return accepted audiences, a token must be intended for at least one of them; null if not validated
+     */
+    public Set<String> getAudiences() {
+        return audiences;
+    }
+
+    public void setAudiences(Set<String> audiences) {
+        this.audiences = audiences;
+        clearCaches();
+    }
+
+    /**
+     * @return maximum length of a token in characters
+     */
+    public int getMaxTokenSize() {
+        return maxTokenSize;
+    }
+
+    public void setMaxTokenSize(int maxTokenSize) {
+        this.maxTokenSize = maxTokenSize;
+        clearCaches();
+    }
+
+    public ValidationMetrics getValidationMetrics() {
+        return validationMetrics;
+    }
+
+    public JWTVerifierRegistry getVerifierRegistry() {
+        return verifierRegistry;
+    }
+
+    public TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
+    public void setTokenCache(TokenCache tokenCache) {
+        this.tokenCache = tokenCache;
+    }
+
+    /**
+     * @return true if tokens are verified when the principal is first used instead of by the authorization filter
+     */
+    public boolean isLazyEnabled() {
+        return lazyEnabled;
+    }
+
+    public void setLazyEnabled(boolean lazyEnabled) {
+        this.lazyEnabled = lazyEnabled;
+    }
+
+    /**
+     * @return true if the authorization filter validates tokens without waiting for keys to be loaded
+     */
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    public void setAsyncEnabled(boolean asyncEnabled) {
+        this.asyncEnabled = asyncEnabled;
+    }
+
+    /**
+     * @return executor which validates tokens whose keys have to be loaded first, null if async mode is disabled
+     */
+    public Executor getValidationExecutor() {
+        return validationExecutor;
+    }
+
+    public void setValidationExecutor(Executor validationExecutor) {
+        this.validationExecutor = validationExecutor;
+    }
+
+    public RejectedTokenCache getRejectedTokenCache() {
+        return rejectedTokenCache;
+    }
+
+    public void setRejectedTokenCache(RejectedTokenCache rejectedTokenCache) {
+        this.rejectedTokenCache = rejectedTokenCache;
     }
 
-    protected static class KumuluzJwkProvider implements JwkProvider {
+    protected static class KumuluzJwkProvider implements JwkProvider, RSAKeyProvider {
 
         private Map<String, Jwk> jwkMap;
+        private PublicKeyCache publicKeyCache = new PublicKeyCache();
 
         @SuppressWarnings("unchecked")
         public KumuluzJwkProvider(String jwkPayload) throws SigningKeyNotFoundException {
@@ -228,6 +645,8 @@ public class JWTContextInfo {
             } catch (Exception e) {
                 throw new SigningKeyNotFoundException("No keys found in payload", e);
             }
+
+            publicKeyCache.load(jwkMap.values());
         }
 
         @Override
@@ -239,6 +658,27 @@ public class JWTContextInfo {
 
             throw new SigningKeyNotFoundException("No key found in Kumuluz JWK provider with kid " + keyId, null);
         }
+
+        @Override
+        public RSAPublicKey getPublicKeyById(String keyId) {
+            RSAPublicKey publicKey = publicKeyCache.get(keyId);
+
+            if (publicKey == null) {
+                throw new IllegalArgumentException("No RSA key found in Kumuluz JWK provider with kid " + keyId);
+            }
+
+            return publicKey;
+        }
+
+        @Override
+        public RSAPrivateKey getPrivateKey() {
+            return null;
+        }
+
+        @Override
+        public String getPrivateKeyId() {
+            return null;
+        }
     }
 
 }
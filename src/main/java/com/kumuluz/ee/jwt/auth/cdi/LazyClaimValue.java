@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.cdi;
+
+import org.eclipse.microprofile.jwt.ClaimValue;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import javax.inject.Provider;
+import javax.json.JsonValue;
+import java.util.function.Function;
+
+/**
+ * {@link ClaimValue} which resolves the claim against the current request's token when it is first read. The value is
+ * memoized per token, so beans outliving a request resolve the claim again for the next token.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class LazyClaimValue<T> implements ClaimValue<T> {
+
+    private final ClaimDescriptor descriptor;
+    private final Provider<JsonWebToken> principalProvider;
+    private final Function<JsonValue, T> converter;
+
+    private volatile Memo<T> memo;
+
+    public LazyClaimValue(ClaimDescriptor descriptor, Provider<JsonWebToken> principalProvider,
+                          Function<JsonValue, T> converter) {
+        this.descriptor = descriptor;
+        this.principalProvider = principalProvider;
+        this.converter = converter;
+    }
+
+    @Override
+    public String getName() {
+        return descriptor.getClaimName();
+    }
+
+    @Override
+    public T getValue() {
+        descriptor.validate();
+
+        JsonWebToken principal = principalProvider.get();
+        Memo<T> current = memo;
+        if (current != null && current.principal == principal) {
+            return current.value;
+        }
+
+        T value = converter.apply(descriptor.getClaim(principal));
+        memo = new Memo<>(principal, value);
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "ClaimValue[" + descriptor.getClaimName() + "]";
+    }
+
+    private static class Memo<T> {
+
+        private final JsonWebToken principal;
+        private final T value;
+
+        private Memo(JsonWebToken principal, T value) {
+            this.principal = principal;
+            this.value = value;
+        }
+    }
+}
@@ -20,13 +20,19 @@
  */
 package com.kumuluz.ee.jwt.auth.context;
 
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
 import javax.ws.rs.core.SecurityContext;
 import java.security.Principal;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * MP-JWT security context implementation
+ * <p>
+ * The principal is either known when the context is created or resolved on first use, e.g. when the token is verified
+ * lazily. A lazily resolved principal is resolved at most once.
  *
  * @author Benjamin Kastelic
  * @since 1.0.0
@@ -35,20 +41,58 @@ public class JWTSecurityContext implements SecurityContext {
 
     private SecurityContext delegate;
     private JsonWebToken principal;
+    private volatile Supplier<JsonWebToken> principalSupplier;
 
     public JWTSecurityContext(SecurityContext delegate, JsonWebToken principal) {
         this.delegate = delegate;
         this.principal = principal;
     }
 
+    /**
+     * @param delegate          security context of the request
+     * @param principalSupplier resolves the principal on first use, returns null if the request isn't authenticated
+     */
+    public JWTSecurityContext(SecurityContext delegate, Supplier<JsonWebToken> principalSupplier) {
+        this.delegate = delegate;
+        this.principalSupplier = principalSupplier;
+    }
+
     @Override
     public Principal getUserPrincipal() {
-        return principal;
+        return getPrincipal();
     }
 
     @Override
     public boolean isUserInRole(String role) {
-        return principal != null && principal.getGroups() != null && principal.getGroups().contains(role);
+        JsonWebToken principal = getPrincipal();
+
+        if (principal instanceof JWTPrincipal) {
+            return ((JWTPrincipal) principal).isInGroup(role);
+        }
+
+        Set<String> groups = principal != null ? principal.getGroups() : null;
+        return groups != null && groups.contains(role);
+    }
+
+    /**
+     * @return true if the principal is known, false if it will be resolved on first use
+     */
+    public boolean isResolved() {
+        return principalSupplier == null;
+    }
+
+    private JsonWebToken getPrincipal() {
+        if (principalSupplier != null) {
+            synchronized (this) {
+                Supplier<JsonWebToken> supplier = principalSupplier;
+                if (supplier != null) {
+                    principal = supplier.get();
+                    principalSupplier = null;
+                }
+            }
+        }
+
+        return principal;
     }
 
     @Override
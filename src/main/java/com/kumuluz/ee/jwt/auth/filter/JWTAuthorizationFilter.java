@@ -24,8 +24,8 @@ import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
 import com.kumuluz.ee.jwt.auth.context.JWTSecurityContext;
 import com.kumuluz.ee.jwt.auth.feature.FeatureDisabledSingleton;
 import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
-import com.kumuluz.ee.jwt.auth.validator.JWTValidationException;
 import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
+import com.kumuluz.ee.jwt.auth.validator.ValidationResult;
 
 import javax.annotation.Priority;
 import javax.enterprise.context.ApplicationScoped;
@@ -38,11 +38,15 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.ext.Provider;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * MP-JWT entry point.
  * Check is authorization header is present and performs token validation and parsing.
+ * <p>
+ * In lazy mode the token is only extracted and verified when the principal is first used, e.g. by
+ * {@link javax.ws.rs.core.SecurityContext#getUserPrincipal()}, the role checks or claim injection.
  *
  * @author Benjamin Kastelic
  * @since 1.0.0
@@ -57,6 +61,7 @@ public class JWTAuthorizationFilter implements ContainerRequestFilter {
 
     private static final String AUTHORIZATION_HEADER = "Authorization";
     private static final String BEARER_AUTHORIZATION_TOKEN_NAME = "Bearer";
+    private static final int RETRY_AFTER_SECONDS = 1;
 
     @Inject
     private JWTContextInfo jwtContextInfo;
@@ -75,34 +80,96 @@ public class JWTAuthorizationFilter implements ContainerRequestFilter {
 
         if (authorization != null) {
             if (authorization.startsWith(BEARER_AUTHORIZATION_TOKEN_NAME)) {
+                ValidationResult result;
                 try {
                     String token = authorization.substring(BEARER_AUTHORIZATION_TOKEN_NAME.length() + 1);
-                    JWTPrincipal jwtPrincipal = validateToken(token, jwtContextInfo);
-                    final SecurityContext securityContext = requestContext.getSecurityContext();
-                    JWTSecurityContext jwtSecurityContext = new JWTSecurityContext(securityContext, jwtPrincipal);
-                    requestContext.setSecurityContext(jwtSecurityContext);
-                } catch (Exception e) {
-                    LOG.fine("Authentication failed: " + e.getMessage());
+                    if (jwtContextInfo.isLazyEnabled()) {
+                        requestContext.setSecurityContext(
+                                new JWTSecurityContext(requestContext.getSecurityContext(), () -> validateLazily(token)));
+                        return;
+                    }
+                    result = jwtContextInfo.isAsyncEnabled() ?
+                            validateIfKeyLoaded(token) :
+                            JWTValidator.validate(token, jwtContextInfo);
+                } catch (RuntimeException e) {
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.fine("Authentication failed: " + e.getMessage());
+                    }
+                    abortUnauthorized(requestContext);
+                    return;
+                }
+
+                if (result == null) {
+                    LOG.fine("Authentication postponed until the verification key is loaded.");
                     requestContext.abortWith(
                             Response
-                                    .status(Response.Status.UNAUTHORIZED)
-                                    .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer realm=\"MP-JWT\"")
+                                    .status(Response.Status.SERVICE_UNAVAILABLE)
+                                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
                                     .build()
                     );
+                } else if (result.isAccepted()) {
+                    final SecurityContext securityContext = requestContext.getSecurityContext();
+                    JWTSecurityContext jwtSecurityContext = new JWTSecurityContext(securityContext, result.getPrincipal());
+                    requestContext.setSecurityContext(jwtSecurityContext);
+                } else {
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.fine("Authentication failed: " + result.getReason().getMessage());
+                    }
+                    abortUnauthorized(requestContext);
                 }
             } else {
                 LOG.fine("Authentication failed due to missing Authorization bearer token.");
-                requestContext.abortWith(
-                        Response
-                                .status(Response.Status.UNAUTHORIZED)
-                                .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer realm=\"MP-JWT\"")
-                                .build()
-                );
+                abortUnauthorized(requestContext);
             }
         }
     }
 
-    private JWTPrincipal validateToken(String token, JWTContextInfo jwtContextInfo) throws JWTValidationException {
-        return JWTValidator.validateToken(token, jwtContextInfo);
+    /**
+     * Verifies the token when the principal is first used. A rejected token, or a token that can't be verified (e.g.
+     * because no key is configured), leaves the request unauthenticated.
+     *
+     * @return principal or null if the token was rejected
+     */
+    private JWTPrincipal validateLazily(String token) {
+        ValidationResult result;
+        try {
+            result = JWTValidator.validate(token, jwtContextInfo);
+        } catch (RuntimeException e) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Authentication failed: " + e.getMessage());
+            }
+            return null;
+        }
+
+        if (!result.isAccepted() && LOG.isLoggable(Level.FINE)) {
+            LOG.fine("Authentication failed: " + result.getReason().getMessage());
+        }
+
+        return result.getPrincipal();
+    }
+
+    /**
+     * Request filters can't suspend the request, so instead of waiting for the keys the request is rejected as
+     * temporarily unavailable while the keys are loaded in the background. The token is not validated until the client
+     * retries.
+     *
+     * @return validation result or null if the keys are being loaded
+     */
+    private ValidationResult validateIfKeyLoaded(String token) {
+        ValidationResult result = JWTValidator.validateIfKeyLoaded(token, jwtContextInfo);
+        if (result == null) {
+            jwtContextInfo.refreshKeysInBackground();
+        }
+
+        return result;
+    }
+
+    private void abortUnauthorized(ContainerRequestContext requestContext) {
+        requestContext.abortWith(
+                Response
+                        .status(Response.Status.UNAUTHORIZED)
+                        .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer realm=\"MP-JWT\"")
+                        .build()
+        );
     }
 }
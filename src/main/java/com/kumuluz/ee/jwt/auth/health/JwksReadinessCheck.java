@@ -0,0 +1,53 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.health;
+
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Reports the instance as ready once the keys needed to verify tokens are loaded. Only active when MicroProfile Health
+ * (e.g. KumuluzEE Health) is present.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+@Readiness
+@ApplicationScoped
+public class JwksReadinessCheck implements HealthCheck {
+
+    static final String NAME = "JwtAuthKeysReadinessCheck";
+
+    @Inject
+    private JWTContextInfo jwtContextInfo;
+
+    @Override
+    public HealthCheckResponse call() {
+        return HealthCheckResponse.named(NAME)
+                .state(jwtContextInfo.isReady())
+                .build();
+    }
+}
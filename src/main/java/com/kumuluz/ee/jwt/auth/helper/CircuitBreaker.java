@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Simple circuit breaker. After {@code failureThreshold} consecutive failures the breaker opens and rejects calls for
+ * {@code openDurationMillis}. Afterwards a single trial call is allowed (half open); it closes the breaker on success
+ * and opens it again on failure.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOG = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationMillis;
+
+    private final Map<State, Long> transitionCounts = new EnumMap<>(State.class);
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInProgress;
+    private long rejectedCount;
+
+    /**
+     * @param name               name used in log messages
+     * @param failureThreshold   number of consecutive failures which open the breaker, non-positive disables it
+     * @param openDurationMillis time the breaker stays open
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openDurationMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = openDurationMillis;
+    }
+
+    /**
+     * Returns whether a call may be made. Every permitted call must be followed by {@link #onSuccess()} or
+     * {@link #onFailure()}.
+     *
+     * @return true if the call is permitted
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+            transitionTo(State.HALF_OPEN);
+        }
+
+        if (state == State.CLOSED || (state == State.HALF_OPEN && !trialInProgress)) {
+            trialInProgress = state == State.HALF_OPEN;
+            return true;
+        }
+
+        rejectedCount++;
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInProgress = false;
+        if (state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        trialInProgress = false;
+        if (state == State.HALF_OPEN || (failureThreshold > 0 && state == State.CLOSED &&
+                consecutiveFailures >= failureThreshold)) {
+            openedAt = System.currentTimeMillis();
+            transitionTo(State.OPEN);
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns how many times the breaker has transitioned to the given state.
+     *
+     * @param state target state
+     * @return number of transitions
+     */
+    public synchronized long getTransitionCount(State state) {
+        return transitionCounts.getOrDefault(state, 0L);
+    }
+
+    /**
+     * @return number of calls rejected while the breaker was open
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private void transitionTo(State newState) {
+        LOG.info(() -> "Circuit breaker " + name + " transitioned from " + state + " to " + newState + ".");
+        state = newState;
+        transitionCounts.merge(newState, 1L, Long::sum);
+    }
+}
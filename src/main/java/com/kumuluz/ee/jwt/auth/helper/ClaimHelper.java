@@ -22,9 +22,16 @@ package com.kumuluz.ee.jwt.auth.helper;
 
 import com.auth0.jwt.impl.NullClaim;
 import com.auth0.jwt.interfaces.Claim;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.eclipse.microprofile.jwt.Claims;
 
 import javax.json.*;
+import javax.json.spi.JsonProvider;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +43,33 @@ import java.util.Map;
  */
 public class ClaimHelper {
 
+    // Json.create* methods look up the provider on every call, so the provider and builder factory are cached
+    private static final JsonProvider JSON_PROVIDER = JsonProvider.provider();
+    private static final JsonBuilderFactory BUILDER_FACTORY = JSON_PROVIDER.createBuilderFactory(null);
+
+    private static final Map<String, Claims> STANDARD_CLAIMS;
+
+    static {
+        Map<String, Claims> standardClaims = new HashMap<>();
+        for (Claims claim : Claims.values()) {
+            if (claim != Claims.UNKNOWN) {
+                standardClaims.put(claim.name(), claim);
+            }
+        }
+        STANDARD_CLAIMS = Collections.unmodifiableMap(standardClaims);
+    }
+
+    /**
+     * Resolves a claim name to a standard claim without the exception thrown by {@link Claims#valueOf(String)}.
+     *
+     * @param name claim name
+     * @return standard claim or {@link Claims#UNKNOWN} for custom claims
+     */
+    public static Claims getClaimType(String name) {
+        Claims claim = name != null ? STANDARD_CLAIMS.get(name) : null;
+        return claim != null ? claim : Claims.UNKNOWN;
+    }
+
     public static Claim getClaim(String name, Map<String, Claim> claims) {
         if (claims.containsKey(name)) {
             return claims.get(name);
@@ -62,7 +96,7 @@ public class ClaimHelper {
 
     @SuppressWarnings("unchecked")
     public static JsonObject convertMap(Map<String, Object> map) {
-        JsonObjectBuilder builder = Json.createObjectBuilder();
+        JsonObjectBuilder builder = BUILDER_FACTORY.createObjectBuilder();
 
         if (map == null) {
             return builder.build();
@@ -92,27 +126,58 @@ public class ClaimHelper {
         return builder.build();
     }
 
+    /**
+     * Converts a parsed JSON value to JSON-P directly, without an intermediate map or list.
+     *
+     * @param node parsed value
+     * @return JSON-P value or null for null and missing nodes
+     */
+    public static JsonValue convertNode(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        } else if (node.isTextual()) {
+            return JSON_PROVIDER.createValue(node.textValue());
+        } else if (node.isBoolean()) {
+            return convertBoolean(node.booleanValue());
+        } else if (node.isIntegralNumber()) {
+            return node.canConvertToLong()
+                    ? JSON_PROVIDER.createValue(node.longValue())
+                    : JSON_PROVIDER.createValue(node.bigIntegerValue());
+        } else if (node.isNumber()) {
+            return JSON_PROVIDER.createValue(node.doubleValue());
+        } else if (node.isArray()) {
+            JsonArrayBuilder arrayBuilder = BUILDER_FACTORY.createArrayBuilder();
+            for (JsonNode element : node) {
+                JsonValue value = convertNode(element);
+                arrayBuilder.add(value != null ? value : JsonValue.NULL);
+            }
+            return arrayBuilder.build();
+        } else if (node.isObject()) {
+            JsonObjectBuilder builder = BUILDER_FACTORY.createObjectBuilder();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonValue value = convertNode(field.getValue());
+                builder.add(field.getKey(), value != null ? value : JsonValue.NULL);
+            }
+            return builder.build();
+        }
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
     public static JsonValue wrapValue(Object value) {
         JsonValue jsonValue = null;
         if (value instanceof String) {
-            String str = (String) value;
-            jsonValue = Json.createObjectBuilder()
-                    .add("tmp", str)
-                    .build()
-                    .getJsonString("tmp");
+            jsonValue = JSON_PROVIDER.createValue((String) value);
         }
         else if (value instanceof Number) {
             Number number = (Number) value;
             if((number instanceof Long) || (number instanceof Integer)) {
-                jsonValue = Json.createObjectBuilder()
-                        .add("tmp", number.longValue())
-                        .build()
-                        .getJsonNumber("tmp");
+                jsonValue = JSON_PROVIDER.createValue(number.longValue());
             } else {
-                jsonValue = Json.createObjectBuilder()
-                        .add("tmp", number.doubleValue())
-                        .build()
-                        .getJsonNumber("tmp");
+                jsonValue = JSON_PROVIDER.createValue(number.doubleValue());
             }
         }
         else if(value instanceof Boolean) {
@@ -120,7 +185,7 @@ public class ClaimHelper {
             jsonValue = flag ? JsonValue.TRUE : JsonValue.FALSE;
         }
         else if(value instanceof Collection) {
-            JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+            JsonArrayBuilder arrayBuilder = BUILDER_FACTORY.createArrayBuilder();
             Collection collection = (Collection) value;
             for(Object element : collection) {
                 if(element instanceof String) {
@@ -133,6 +198,9 @@ public class ClaimHelper {
             }
             jsonValue = arrayBuilder.build();
         }
+        else if(value instanceof Map) {
+            jsonValue = convertMap((Map<String, Object>) value);
+        }
         return jsonValue;
     }
 }
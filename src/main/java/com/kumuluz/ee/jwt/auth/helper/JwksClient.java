@@ -0,0 +1,257 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import com.auth0.jwk.Jwk;
+import com.auth0.jwk.SigningKeyNotFoundException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fetches and parses JSON Web Key Sets. Requests are made conditional on the validators ({@code ETag} and
+ * {@code Last-Modified}) of the last parsed key set, so an unchanged key set is neither downloaded nor parsed again.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksClient {
+
+    private static final ObjectReader JWKS_READER = new ObjectMapper()
+            .readerFor(new TypeReference<Map<String, Object>>() {
+            });
+
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|,)\\s*max-age\\s*=\\s*\"?(\\d+)\"?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern NO_CACHE = Pattern.compile("(?:^|,)\\s*(?:no-cache|no-store)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final URL jwksUri;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private volatile String entityTag;
+    private volatile String lastModified;
+
+    public JwksClient(URL jwksUri) {
+        this(jwksUri, 0, 0);
+    }
+
+    /**
+     * @param jwksUri              key set location
+     * @param connectTimeoutMillis connect timeout, 0 means no timeout
+     * @param readTimeoutMillis    read timeout, 0 means no timeout
+     */
+    public JwksClient(URL jwksUri, int connectTimeoutMillis, int readTimeoutMillis) {
+        this.jwksUri = jwksUri;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Downloads and parses the key set, unless it has not changed since the last call.
+     *
+     * @return fetched key set
+     * @throws IOException                 if the key set could not be downloaded
+     * @throws SigningKeyNotFoundException if the downloaded document is not a valid key set
+     */
+    public Response fetch() throws IOException, SigningKeyNotFoundException {
+        URLConnection connection = jwksUri.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestProperty("Accept", "application/json");
+
+        String currentEntityTag = entityTag;
+        String currentLastModified = lastModified;
+        if (currentEntityTag != null) {
+            connection.setRequestProperty("If-None-Match", currentEntityTag);
+        }
+        if (currentLastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", currentLastModified);
+        }
+
+        if (connection instanceof HttpURLConnection &&
+                ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            ((HttpURLConnection) connection).disconnect();
+            return new Response(null, null, parseMaxAge(connection.getHeaderField("Cache-Control")));
+        }
+
+        String document = read(connection);
+        List<Jwk> keys = parse(document);
+
+        // validators are only kept for key sets which were parsed successfully
+        entityTag = connection.getHeaderField("ETag");
+        lastModified = connection.getHeaderField("Last-Modified");
+
+        return new Response(document, keys, parseMaxAge(connection.getHeaderField("Cache-Control")));
+    }
+
+    /**
+     * Forgets the validators of the last parsed key set, so the next fetch downloads the full key set.
+     */
+    public void reset() {
+        entityTag = null;
+        lastModified = null;
+    }
+
+    public URL getJwksUri() {
+        return jwksUri;
+    }
+
+    /**
+     * Reads the response body of a connection as an UTF-8 string.
+     *
+     * @param connection connection to read from
+     * @return response body
+     * @throws IOException if the response could not be read
+     */
+    static String read(URLConnection connection) throws IOException {
+        try (InputStream inputStream = connection.getInputStream()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+
+            return new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses the {@code max-age} directive of a {@code Cache-Control} header.
+     *
+     * @param cacheControl header value, may be null
+     * @return max age in milliseconds, 0 if the response must not be cached or -1 if not specified
+     */
+    static long parseMaxAge(String cacheControl) {
+        if (cacheControl == null) {
+            return -1;
+        }
+
+        if (NO_CACHE.matcher(cacheControl).find()) {
+            return 0;
+        }
+
+        Matcher matcher = MAX_AGE.matcher(cacheControl);
+        if (matcher.find()) {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(matcher.group(1)));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses a key set document.
+     *
+     * @param document raw key set document
+     * @return keys contained in the document
+     * @throws SigningKeyNotFoundException if the document is not a valid key set or contains no keys
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Jwk> parse(String document) throws SigningKeyNotFoundException {
+        Map<String, Object> jwks;
+        try {
+            jwks = JWKS_READER.readValue(document);
+        } catch (IOException e) {
+            throw new SigningKeyNotFoundException("Failed to parse JWKS", e);
+        }
+
+        Object keys = jwks.get("keys");
+        if (!(keys instanceof List) || ((List) keys).isEmpty()) {
+            throw new SigningKeyNotFoundException("No keys found in JWKS", null);
+        }
+
+        List<Jwk> jwkList = new ArrayList<>();
+        try {
+            for (Map<String, Object> values : (List<Map<String, Object>>) keys) {
+                jwkList.add(Jwk.fromValues(values));
+            }
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new SigningKeyNotFoundException("Failed to parse jwk from json", e);
+        }
+
+        return jwkList;
+    }
+
+    /**
+     * Result of a key set fetch.
+     */
+    public static class Response {
+
+        private final String document;
+        private final List<Jwk> keys;
+        private final long maxAgeMillis;
+
+        Response(String document, List<Jwk> keys, long maxAgeMillis) {
+            this.document = document;
+            this.keys = keys;
+            this.maxAgeMillis = maxAgeMillis;
+        }
+
+        /**
+         * @return true if the key set has not changed since the last fetch
+         */
+        public boolean isNotModified() {
+            return keys == null;
+        }
+
+        /**
+         * @return raw key set document or null if not modified
+         */
+        public String getDocument() {
+            return document;
+        }
+
+        /**
+         * @return parsed keys or null if not modified
+         */
+        public List<Jwk> getKeys() {
+            return keys;
+        }
+
+        /**
+         * @return how long (in milliseconds) the key set may be cached according to the JWKS server, 0 if it must not
+         * be cached or -1 if not specified
+         */
+        public long getMaxAgeMillis() {
+            return maxAgeMillis;
+        }
+    }
+}
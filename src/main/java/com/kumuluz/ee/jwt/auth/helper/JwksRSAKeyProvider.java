@@ -21,13 +21,20 @@
 package com.kumuluz.ee.jwt.auth.helper;
 
 import com.auth0.jwk.JwkException;
-import com.auth0.jwk.JwkProvider;
-import com.auth0.jwk.JwkProviderBuilder;
-import com.auth0.jwt.interfaces.RSAKeyProvider;
+import java.io.IOException;
 import java.net.URL;
-import java.security.PublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Provides a RSA key from a jwks server.
@@ -35,23 +42,318 @@ import java.security.interfaces.RSAPublicKey;
  * @author Daniel Pfeifer
  * @since 1.1.0
  */
-public class JwksRSAKeyProvider implements RSAKeyProvider {
-    private final JwkProvider jwkProvider;
+public class JwksRSAKeyProvider implements ManagedRSAKeyProvider {
+
+    private static final Logger LOG = Logger.getLogger(JwksRSAKeyProvider.class.getName());
+
+    private final URL jwksUri;
+    private final JwksClient jwksClient;
+    private final JwksSnapshot snapshot;
+    private final PublicKeyCache publicKeyCache;
+    private final CircuitBreaker circuitBreaker;
+
+    private final long refreshIntervalMillis;
+    private final long maxStalenessMillis;
+    private final long minRefetchIntervalMillis;
+    private ScheduledExecutorService refreshExecutor;
+    private boolean closed;
+
+    private final AtomicReference<CompletableFuture<Void>> inFlightFetch = new AtomicReference<>();
+    private final AtomicLong lastFetch = new AtomicLong();
+    private final AtomicBoolean backgroundFetchScheduled = new AtomicBoolean();
+    private volatile long loadedAt;
+    private volatile boolean fetchedFromJwks;
+    private volatile long maxAgeMillis = -1;
 
     public JwksRSAKeyProvider(URL jwksUri) {
-        this.jwkProvider = new JwkProviderBuilder(jwksUri).build();
+        this(new JwksRSAKeyProviderBuilder(jwksUri));
+    }
+
+    JwksRSAKeyProvider(JwksRSAKeyProviderBuilder builder) {
+        this.jwksUri = builder.jwksUri;
+        this.jwksClient = new JwksClient(jwksUri, builder.connectTimeoutMillis, builder.readTimeoutMillis);
+        this.circuitBreaker = new CircuitBreaker("JWKS " + jwksUri, builder.failureThreshold,
+                builder.openDurationMillis);
+        this.publicKeyCache = new PublicKeyCache(builder.keySetListener);
+        this.snapshot = builder.snapshotFile != null ? new JwksSnapshot(builder.snapshotFile) : null;
+        this.refreshIntervalMillis = builder.refreshIntervalMillis;
+        this.maxStalenessMillis = builder.maxStalenessMillis;
+        this.minRefetchIntervalMillis = builder.minRefetchIntervalMillis;
+
+        if (refreshIntervalMillis > 0) {
+            loadSnapshot();
+            schedule(this::refresh, 0);
+        } else if (loadSnapshot()) {
+            schedule(this::reconcile, 0);
+        }
     }
 
     @Override
     public RSAPublicKey getPublicKeyById(String keyId) {
+        RSAPublicKey publicKey = isUsable() ? publicKeyCache.get(keyId) : null;
+
+        if (publicKey == null) {
+            loadKeys(false);
+            publicKey = isUsable() ? publicKeyCache.get(keyId) : null;
+        }
+
+        if (publicKey == null && !isReady()) {
+            throw new KeyUnavailableException(String.format("Key with ID '%s' couldn't be fetched from JWKS, the key " +
+                    "set is not loaded or stale.", keyId));
+        } else if (publicKey == null) {
+            throw new IllegalArgumentException(String.format("Key with ID '%s' couldn't be fetched from JWKS.", keyId));
+        }
+
+        return publicKey;
+    }
+
+    @Override
+    public RSAPublicKey getLoadedPublicKeyById(String keyId) {
+        return isUsable() ? publicKeyCache.get(keyId) : null;
+    }
+
+    @Override
+    public boolean isLoading() {
+        return inFlightFetch.get() != null;
+    }
+
+    @Override
+    public void refreshInBackground() {
+        long previousFetch = lastFetch.get();
+        if (previousFetch != 0 && System.currentTimeMillis() - previousFetch < minRefetchIntervalMillis ||
+                !backgroundFetchScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        schedule(() -> {
+            try {
+                loadKeys(false);
+            } catch (RuntimeException e) {
+                LOG.log(Level.FINE, "Keys couldn't be fetched from JWKS " + jwksUri + " in the background.", e);
+            } finally {
+                backgroundFetchScheduled.set(false);
+            }
+        }, 0);
+    }
+
+    /**
+     * Returns the time (in milliseconds) the key set was last fetched successfully or 0 if it was never fetched.
+     *
+     * @return time of the last successful fetch
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public URL getJwksUri() {
+        return jwksUri;
+    }
+
+    @Override
+    public boolean prefetch() {
         try {
-            final PublicKey publicKey = jwkProvider.get(keyId).getPublicKey();
-            if (!(publicKey instanceof RSAPublicKey)) {
-                throw new IllegalArgumentException(String.format("Key with ID '%s' was found in JWKS but is not a RSA-key.", keyId));
+            loadKeys(true);
+            return true;
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Keys couldn't be prefetched from JWKS " + jwksUri + ", retrying in the background.", e);
+            if (refreshIntervalMillis <= 0) {
+                schedule(this::reconcile, retryDelay());
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return !publicKeyCache.isEmpty() && isUsable();
+    }
+
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    private boolean isUsable() {
+        return maxStalenessMillis <= 0 || System.currentTimeMillis() - loadedAt <= maxStalenessMillis;
+    }
+
+    /**
+     * Loads the keys from the local snapshot, if one is configured and present.
+     *
+     * @return true if keys were loaded
+     */
+    private boolean loadSnapshot() {
+        if (snapshot == null || !snapshot.exists()) {
+            return false;
+        }
+
+        try {
+            publicKeyCache.load(JwksClient.parse(snapshot.read()));
+            loadedAt = snapshot.lastModified();
+            LOG.fine(() -> "Loaded JWKS keys from snapshot " + snapshot.getFile());
+            return true;
+        } catch (IOException | JwkException e) {
+            LOG.log(Level.WARNING, "JWKS snapshot " + snapshot.getFile() + " couldn't be loaded.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Fetches the key set from the JWKS server, retrying until the server is reachable. Used when background refresh
+     * is disabled but the key set has not been fetched yet, i.e. it was loaded from a snapshot or prefetching failed.
+     */
+    private void reconcile() {
+        if (fetchedFromJwks) {
+            return;
+        }
+
+        try {
+            loadKeys(true);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Keys couldn't be fetched from JWKS " + jwksUri + ", retrying.", e);
+            schedule(this::reconcile, retryDelay());
+        }
+    }
+
+    private long retryDelay() {
+        return Math.max(minRefetchIntervalMillis, 1000);
+    }
+
+    /**
+     * Refreshes the key set and schedules the next refresh.
+     */
+    private void refresh() {
+        try {
+            loadKeys(true);
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Keys couldn't be refreshed from JWKS " + jwksUri + ", using the last fetched keys.", e);
+        }
+
+        schedule(this::refresh, nextRefreshDelay());
+    }
+
+    /**
+     * Returns the delay of the next refresh: the configured interval or, if the JWKS server declared a shorter max age
+     * in its {@code Cache-Control} header, the max age (but not less than the minimum refetch interval). If the
+     * staleness of the keys is limited, keys are refreshed after half of the limit at the latest, so they don't get
+     * stale while a single refresh fails and requests never have to fetch them.
+     */
+    private long nextRefreshDelay() {
+        long delay = refreshIntervalMillis;
+
+        long maxAge = maxAgeMillis;
+        if (maxAge > 0) {
+            delay = Math.min(delay, Math.max(maxAge, minRefetchIntervalMillis));
+        }
+
+        if (maxStalenessMillis > 0) {
+            delay = Math.min(delay, maxStalenessMillis / 2);
+        }
+
+        return delay;
+    }
+
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (closed) {
+            return;
+        }
+
+        if (refreshExecutor == null) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "jwt-auth-jwks-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        refreshExecutor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the key set and decodes all RSA keys. Concurrent callers join a running fetch instead of starting their
+     * own. Unless forced, a new fetch is started only if the previous one started at least
+     * {@code minRefetchIntervalMillis} ago, so tokens with unknown key ids cannot be used to flood the JWKS server.
+     * While the circuit breaker is open, no fetch is started and callers fail immediately.
+     *
+     * @throws KeyUnavailableException if the fetch failed or the circuit breaker is open
+     */
+    private void loadKeys(boolean force) {
+        CompletableFuture<Void> fetch = inFlightFetch.get();
+
+        if (fetch == null) {
+            long now = System.currentTimeMillis();
+            long previousFetch = lastFetch.get();
+            if (!force && previousFetch != 0 && now - previousFetch < minRefetchIntervalMillis) {
+                return;
+            }
+
+            CompletableFuture<Void> newFetch = new CompletableFuture<>();
+            if (inFlightFetch.compareAndSet(null, newFetch)) {
+                lastFetch.set(now);
+                try {
+                    if (!circuitBreaker.tryAcquire()) {
+                        throw new IllegalStateException("Circuit breaker for JWKS " + jwksUri + " is open.");
+                    }
+                    try {
+                        fetchKeys();
+                        circuitBreaker.onSuccess();
+                    } catch (IOException | JwkException | RuntimeException e) {
+                        circuitBreaker.onFailure();
+                        throw e;
+                    }
+                    newFetch.complete(null);
+                } catch (IOException | JwkException | RuntimeException e) {
+                    newFetch.completeExceptionally(e);
+                } finally {
+                    inFlightFetch.set(null);
+                }
+                fetch = newFetch;
+            } else {
+                fetch = inFlightFetch.get();
+                if (fetch == null) {
+                    // the concurrent fetch has already finished
+                    return;
+                }
+            }
+        }
+
+        try {
+            fetch.join();
+        } catch (CompletionException e) {
+            throw new KeyUnavailableException("Keys couldn't be fetched from JWKS.", e.getCause());
+        }
+    }
+
+    private void fetchKeys() throws IOException, JwkException {
+        JwksClient.Response response = jwksClient.fetch();
+
+        maxAgeMillis = response.getMaxAgeMillis();
+
+        if (response.isNotModified()) {
+            LOG.fine(() -> "JWKS " + jwksUri + " has not been modified.");
+            loadedAt = System.currentTimeMillis();
+            fetchedFromJwks = true;
+            return;
+        }
+
+        publicKeyCache.load(response.getKeys());
+        loadedAt = System.currentTimeMillis();
+        fetchedFromJwks = true;
+
+        if (snapshot != null) {
+            try {
+                snapshot.write(response.getDocument());
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "JWKS snapshot " + snapshot.getFile() + " couldn't be written.", e);
             }
-            return (RSAPublicKey) publicKey;
-        } catch (JwkException e) {
-            throw new IllegalArgumentException(String.format("Key with ID '%s' couldn't be fetched from JWKS.", keyId), e);
         }
     }
 
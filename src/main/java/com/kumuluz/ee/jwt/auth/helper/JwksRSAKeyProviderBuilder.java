@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Builder for {@link JwksRSAKeyProvider}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksRSAKeyProviderBuilder {
+
+    public static final long DEFAULT_MIN_REFETCH_INTERVAL_SECONDS = 6;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_READ_TIMEOUT_MILLIS = 5000;
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_OPEN_DURATION_SECONDS = 30;
+
+    final URL jwksUri;
+
+    long refreshIntervalMillis;
+    long maxStalenessMillis;
+    long minRefetchIntervalMillis = TimeUnit.SECONDS.toMillis(DEFAULT_MIN_REFETCH_INTERVAL_SECONDS);
+    Path snapshotFile;
+    int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    int readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+    int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    long openDurationMillis = TimeUnit.SECONDS.toMillis(DEFAULT_OPEN_DURATION_SECONDS);
+    Consumer<Map<String, RSAPublicKey>> keySetListener;
+
+    public JwksRSAKeyProviderBuilder(URL jwksUri) {
+        if (jwksUri == null) {
+            throw new IllegalArgumentException("A JWKS URI is required.");
+        }
+
+        this.jwksUri = jwksUri;
+    }
+
+    /**
+     * Refreshes the key set in the background with the given interval. Requests are served from the last fetched key
+     * set while a refresh is running or failing. A non-positive interval disables background refresh.
+     *
+     * @param refreshInterval interval between two refreshes
+     * @param unit            unit of the interval
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder refreshInterval(long refreshInterval, TimeUnit unit) {
+        this.refreshIntervalMillis = unit.toMillis(refreshInterval);
+        return this;
+    }
+
+    /**
+     * Limits how long a fetched key set may be used when it cannot be refreshed. Once the key set is older, keys are
+     * fetched synchronously and tokens are rejected if the fetch fails. A non-positive value means no limit.
+     *
+     * @param maxStaleness maximum age of the key set
+     * @param unit         unit of the age
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder maxStaleness(long maxStaleness, TimeUnit unit) {
+        this.maxStalenessMillis = unit.toMillis(maxStaleness);
+        return this;
+    }
+
+    /**
+     * Sets the minimum time between two fetches caused by tokens with unknown key ids. Tokens with an unknown key id
+     * received sooner are rejected without contacting the JWKS server. Defaults to
+     * {@value #DEFAULT_MIN_REFETCH_INTERVAL_SECONDS} seconds.
+     *
+     * @param minRefetchInterval minimum time between two fetches
+     * @param unit               unit of the time
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder minRefetchInterval(long minRefetchInterval, TimeUnit unit) {
+        this.minRefetchIntervalMillis = unit.toMillis(minRefetchInterval);
+        return this;
+    }
+
+    /**
+     * Keeps a copy of the last fetched key set in the given file. The file is replaced atomically after every
+     * successful fetch and its keys are used at startup, before the JWKS server is contacted.
+     *
+     * @param snapshotFile snapshot location
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder snapshotFile(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+        return this;
+    }
+
+    /**
+     * Sets the timeouts for connecting to the JWKS server and reading the key set. Defaults to
+     * {@value #DEFAULT_CONNECT_TIMEOUT_MILLIS} and {@value #DEFAULT_READ_TIMEOUT_MILLIS} milliseconds; 0 means no
+     * timeout.
+     *
+     * @param connectTimeout connect timeout
+     * @param readTimeout    read timeout
+     * @param unit           unit of the timeouts
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder timeouts(long connectTimeout, long readTimeout, TimeUnit unit) {
+        this.connectTimeoutMillis = (int) unit.toMillis(connectTimeout);
+        this.readTimeoutMillis = (int) unit.toMillis(readTimeout);
+        return this;
+    }
+
+    /**
+     * Configures the circuit breaker around key set fetches. After {@code failureThreshold} consecutive failed fetches,
+     * keys are not fetched for {@code openDuration}; tokens signed with keys that are not cached are rejected
+     * immediately instead. Defaults to {@value #DEFAULT_FAILURE_THRESHOLD} failures and
+     * {@value #DEFAULT_OPEN_DURATION_SECONDS} seconds. A non-positive threshold disables the circuit breaker.
+     *
+     * @param failureThreshold number of consecutive failures which open the circuit breaker
+     * @param openDuration     time the circuit breaker stays open
+     * @param unit             unit of the duration
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder circuitBreaker(int failureThreshold, long openDuration, TimeUnit unit) {
+        this.failureThreshold = failureThreshold;
+        this.openDurationMillis = unit.toMillis(openDuration);
+        return this;
+    }
+
+    /**
+     * Registers a listener which is called with the loaded keys (by key id) whenever a fetched key set adds, removes or
+     * replaces keys, e.g. to drop state derived from keys which were rotated out.
+     *
+     * @param keySetListener listener
+     * @return this builder
+     */
+    public JwksRSAKeyProviderBuilder keySetListener(Consumer<Map<String, RSAPublicKey>> keySetListener) {
+        this.keySetListener = keySetListener;
+        return this;
+    }
+
+    public JwksRSAKeyProvider build() {
+        return new JwksRSAKeyProvider(this);
+    }
+}
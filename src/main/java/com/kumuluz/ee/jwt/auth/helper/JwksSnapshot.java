@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Local copy of the last fetched key set, used to validate tokens right after startup without contacting the identity
+ * provider.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksSnapshot {
+
+    private final Path file;
+
+    public JwksSnapshot(Path file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return Files.isRegularFile(file);
+    }
+
+    public String read() throws IOException {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the time (in milliseconds) the snapshot was written.
+     *
+     * @return time of the last write
+     * @throws IOException if the snapshot cannot be accessed
+     */
+    public long lastModified() throws IOException {
+        return Files.getLastModifiedTime(file).toMillis();
+    }
+
+    /**
+     * Replaces the snapshot. The document is written to a temporary file first and then moved over the snapshot, so
+     * readers never see a partially written file.
+     *
+     * @param document raw key set document
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void write(String document) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+
+        Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporaryFile, document.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
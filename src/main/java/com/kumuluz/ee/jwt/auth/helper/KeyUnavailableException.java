@@ -0,0 +1,42 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+/**
+ * Thrown by a key provider when a key can't be resolved because the key set couldn't be loaded, e.g. because the JWKS
+ * server is unreachable, its circuit breaker is open or the loaded key set is too stale to be used. A plain
+ * {@link IllegalArgumentException} means that the key set was loaded but has no key with the requested id.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class KeyUnavailableException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public KeyUnavailableException(String message) {
+        super(message);
+    }
+
+    public KeyUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
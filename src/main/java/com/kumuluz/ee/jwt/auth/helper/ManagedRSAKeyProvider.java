@@ -0,0 +1,80 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * RSA key provider which loads its keys from a remote source and manages their life cycle.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public interface ManagedRSAKeyProvider extends RSAKeyProvider, AutoCloseable {
+
+    /**
+     * Loads the keys on the calling thread, so the first requests don't have to wait for them. If loading fails, it is
+     * retried in the background.
+     *
+     * @return true if the keys were loaded
+     */
+    boolean prefetch();
+
+    /**
+     * Returns whether keys are loaded and can be used to verify tokens.
+     *
+     * @return true if keys are loaded
+     */
+    boolean isReady();
+
+    /**
+     * Returns the key if it is already loaded, without loading keys on the calling thread.
+     *
+     * @param keyId key id
+     * @return loaded key or null if the key would have to be loaded first
+     */
+    RSAPublicKey getLoadedPublicKeyById(String keyId);
+
+    /**
+     * Returns whether keys are being fetched at the moment.
+     *
+     * @return true if a fetch is running
+     */
+    boolean isLoading();
+
+    /**
+     * Fetches the keys in the background, e.g. because a token refers to a key id which isn't loaded. Requests are
+     * coalesced and throttled like fetches for unknown key ids on the calling thread.
+     */
+    void refreshInBackground();
+
+    /**
+     * Returns the circuit breaker guarding key fetches, e.g. to expose its state and transitions as metrics.
+     *
+     * @return circuit breaker or null if the location of the keys is not known yet
+     */
+    CircuitBreaker getCircuitBreaker();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,260 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Provides RSA keys from the JWKS of an OpenID Connect provider. The JWKS location is resolved from the provider's
+ * discovery document ({@code <issuer>/.well-known/openid-configuration}) in the background and periodically refreshed,
+ * so token validation never waits on discovery.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class OidcDiscoveryKeyProvider implements ManagedRSAKeyProvider {
+
+    private static final Logger LOG = Logger.getLogger(OidcDiscoveryKeyProvider.class.getName());
+
+    public static final String DISCOVERY_PATH = "/.well-known/openid-configuration";
+
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final ObjectReader DISCOVERY_READER = new ObjectMapper()
+            .readerFor(new TypeReference<Map<String, Object>>() {
+            });
+
+    private final String issuer;
+    private final URL discoveryUri;
+    private final long refreshIntervalMillis;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final Function<URL, JwksRSAKeyProvider> jwksProviderFactory;
+    private final ScheduledExecutorService discoveryExecutor;
+
+    private volatile JwksRSAKeyProvider jwksProvider;
+    private volatile boolean closed;
+
+    /**
+     * @param issuer                issuer URL of the OpenID Connect provider
+     * @param refreshIntervalMillis interval between two discovery refreshes
+     * @param connectTimeoutMillis  connect timeout for the discovery request, 0 means no timeout
+     * @param readTimeoutMillis     read timeout for the discovery request, 0 means no timeout
+     * @param jwksProviderFactory   creates the key provider for a discovered JWKS location
+     */
+    public OidcDiscoveryKeyProvider(String issuer, long refreshIntervalMillis, int connectTimeoutMillis,
+                                    int readTimeoutMillis, Function<URL, JwksRSAKeyProvider> jwksProviderFactory) {
+        this.issuer = issuer;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.jwksProviderFactory = jwksProviderFactory;
+
+        try {
+            this.discoveryUri = new URL((issuer.endsWith("/") ? issuer.substring(0, issuer.length() - 1) : issuer) +
+                    DISCOVERY_PATH);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("The issuer " + issuer + " is not a valid URL.", e);
+        }
+
+        this.discoveryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwt-auth-oidc-discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.discoveryExecutor.execute(this::refresh);
+    }
+
+    @Override
+    public RSAPublicKey getPublicKeyById(String keyId) {
+        JwksRSAKeyProvider provider = jwksProvider;
+
+        if (provider == null) {
+            throw new KeyUnavailableException(
+                    String.format("OpenID Connect discovery for issuer '%s' has not completed yet.", issuer));
+        }
+
+        return provider.getPublicKeyById(keyId);
+    }
+
+    @Override
+    public RSAPublicKey getLoadedPublicKeyById(String keyId) {
+        JwksRSAKeyProvider provider = jwksProvider;
+        return provider != null ? provider.getLoadedPublicKeyById(keyId) : null;
+    }
+
+    @Override
+    public boolean isLoading() {
+        JwksRSAKeyProvider provider = jwksProvider;
+        return provider != null && provider.isLoading();
+    }
+
+    @Override
+    public void refreshInBackground() {
+        JwksRSAKeyProvider provider = jwksProvider;
+        if (provider != null) {
+            provider.refreshInBackground();
+        }
+    }
+
+    @Override
+    public boolean prefetch() {
+        JwksRSAKeyProvider provider = jwksProvider;
+
+        if (provider == null) {
+            if (!discover()) {
+                return false;
+            }
+            provider = jwksProvider;
+        }
+
+        return provider.isReady() || provider.prefetch();
+    }
+
+    @Override
+    public boolean isReady() {
+        JwksRSAKeyProvider provider = jwksProvider;
+        return provider != null && provider.isReady();
+    }
+
+    /**
+     * Returns the circuit breaker of the discovered JWKS. A new circuit breaker is used when the JWKS location changes.
+     *
+     * @return circuit breaker or null if discovery has not completed yet
+     */
+    @Override
+    public CircuitBreaker getCircuitBreaker() {
+        JwksRSAKeyProvider provider = jwksProvider;
+        return provider != null ? provider.getCircuitBreaker() : null;
+    }
+
+    /**
+     * Returns the key provider for the discovered JWKS location.
+     *
+     * @return key provider or null if discovery has not completed yet
+     */
+    public JwksRSAKeyProvider getJwksProvider() {
+        return jwksProvider;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        discoveryExecutor.shutdownNow();
+
+        if (jwksProvider != null) {
+            jwksProvider.close();
+        }
+    }
+
+    private void refresh() {
+        long delay;
+        if (discover()) {
+            delay = refreshIntervalMillis;
+        } else {
+            delay = refreshIntervalMillis > 0 ? Math.min(refreshIntervalMillis, RETRY_DELAY_MILLIS) : RETRY_DELAY_MILLIS;
+        }
+
+        if (!closed && delay > 0) {
+            discoveryExecutor.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Resolves the discovery document and switches to a new key provider if the JWKS location has changed. The new
+     * key provider is prefetched before it is used, so requests keep using the previous keys in the meantime.
+     *
+     * @return true if the discovery document was resolved
+     */
+    private synchronized boolean discover() {
+        if (closed) {
+            return false;
+        }
+
+        Map<String, Object> configuration;
+        try {
+            URLConnection connection = discoveryUri.openConnection();
+            connection.setConnectTimeout(connectTimeoutMillis);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setRequestProperty("Accept", "application/json");
+
+            configuration = DISCOVERY_READER.readValue(JwksClient.read(connection));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "OpenID Connect discovery document " + discoveryUri + " couldn't be fetched.", e);
+            return false;
+        }
+
+        if (!issuer.equals(configuration.get("issuer"))) {
+            LOG.warning(() -> "OpenID Connect discovery document " + discoveryUri + " belongs to issuer " +
+                    configuration.get("issuer") + " instead of " + issuer + ".");
+            return false;
+        }
+
+        URL jwksUri;
+        try {
+            jwksUri = new URL(String.valueOf(configuration.get("jwks_uri")));
+        } catch (MalformedURLException e) {
+            LOG.log(Level.WARNING, "OpenID Connect discovery document " + discoveryUri + " has no valid jwks_uri.", e);
+            return false;
+        }
+
+        JwksRSAKeyProvider previousProvider = jwksProvider;
+        if (previousProvider == null || !previousProvider.getJwksUri().toString().equals(jwksUri.toString())) {
+            LOG.info(() -> "Discovered JWKS " + jwksUri + " for issuer " + issuer + ".");
+
+            JwksRSAKeyProvider newProvider = jwksProviderFactory.apply(jwksUri);
+            newProvider.prefetch();
+            jwksProvider = newProvider;
+
+            if (previousProvider != null) {
+                previousProvider.close();
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public RSAPrivateKey getPrivateKey() {
+        return null;
+    }
+
+    @Override
+    public String getPrivateKeyId() {
+        return null;
+    }
+}
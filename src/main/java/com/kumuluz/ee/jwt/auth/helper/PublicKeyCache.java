@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import com.auth0.jwk.InvalidPublicKeyException;
+import com.auth0.jwk.Jwk;
+
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Holds decoded RSA public keys by key id. Keys are decoded once when a key set is loaded, lookups only read an
+ * immutable snapshot.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class PublicKeyCache {
+
+    private static final Logger LOG = Logger.getLogger(PublicKeyCache.class.getName());
+
+    private final Consumer<Map<String, RSAPublicKey>> changeListener;
+
+    private volatile Map<String, RSAPublicKey> publicKeys = Collections.emptyMap();
+
+    public PublicKeyCache() {
+        this(null);
+    }
+
+    /**
+     * @param changeListener called with the loaded keys whenever a load adds, removes or replaces keys
+     */
+    public PublicKeyCache(Consumer<Map<String, RSAPublicKey>> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Returns the key with the given id. If the token does not specify a key id and exactly one key is loaded, that
+     * key is returned.
+     *
+     * @param keyId key id or {@code null}
+     * @return decoded key or {@code null} if no such key is loaded
+     */
+    public RSAPublicKey get(String keyId) {
+        Map<String, RSAPublicKey> snapshot = publicKeys;
+
+        if (keyId == null && snapshot.size() == 1) {
+            return snapshot.values().iterator().next();
+        }
+
+        return snapshot.get(keyId);
+    }
+
+    /**
+     * Decodes the given keys and replaces the currently loaded key set. Keys which are not RSA keys are skipped.
+     *
+     * @param jwks keys to load
+     */
+    public void load(Collection<Jwk> jwks) {
+        Map<String, RSAPublicKey> decodedKeys = new HashMap<>();
+
+        for (Jwk jwk : jwks) {
+            try {
+                PublicKey publicKey = jwk.getPublicKey();
+                if (publicKey instanceof RSAPublicKey) {
+                    decodedKeys.put(jwk.getId(), (RSAPublicKey) publicKey);
+                } else {
+                    LOG.fine(() -> String.format("Skipping key with ID '%s', it is not a RSA-key.", jwk.getId()));
+                }
+            } catch (InvalidPublicKeyException e) {
+                LOG.fine(() -> String.format("Skipping key with ID '%s', it could not be decoded.", jwk.getId()));
+            }
+        }
+
+        Map<String, RSAPublicKey> previousKeys = publicKeys;
+        publicKeys = Collections.unmodifiableMap(decodedKeys);
+
+        if (changeListener != null && !decodedKeys.equals(previousKeys)) {
+            changeListener.accept(publicKeys);
+        }
+    }
+
+    public boolean isEmpty() {
+        return publicKeys.isEmpty();
+    }
+
+    public int size() {
+        return publicKeys.size();
+    }
+}
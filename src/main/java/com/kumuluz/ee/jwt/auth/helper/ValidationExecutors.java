@@ -0,0 +1,154 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.helper;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates executors for asynchronous token validation. Virtual threads are used when the runtime provides them
+ * (Java 21 or newer); they are looked up reflectively, so the extension still runs on Java 8. The number of waiting
+ * tasks is bounded, so tokens received during an outage of the identity provider can't exhaust the heap; further
+ * tasks are rejected with a {@link RejectedExecutionException}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ValidationExecutors {
+
+    private static final Logger LOG = Logger.getLogger(ValidationExecutors.class.getName());
+
+    private ValidationExecutors() {
+    }
+
+    /**
+     * @param virtualThreads whether to use virtual threads if the runtime provides them
+     * @param poolSize       number of platform threads used otherwise
+     * @param queueSize      number of tasks which may wait for a thread (or, with virtual threads, run at the same time)
+     * @return executor for token validation
+     */
+    public static ExecutorService newExecutor(boolean virtualThreads, int poolSize, int queueSize) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Queue size must be positive.");
+        }
+
+        if (virtualThreads) {
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                return new BoundedExecutorService(executor, queueSize);
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "jwt-auth-validation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @return executor starting a virtual thread per task or null if the runtime doesn't provide virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            // e.g. virtual threads are a preview feature which is not enabled
+            LOG.log(Level.FINE, "Virtual threads are not available.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Rejects tasks while the maximum number of tasks is running, as an executor starting a virtual thread per task
+     * doesn't queue them.
+     */
+    private static class BoundedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        BoundedExecutorService(ExecutorService delegate, int maxTasks) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxTasks);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (!permits.tryAcquire()) {
+                throw new RejectedExecutionException("Too many tokens are waiting for validation.");
+            }
+
+            try {
+                delegate.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.parser;
+
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.interfaces.Claim;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Claim backed by a node of the parsed payload, with the same conversions as the claims of java-jwt. The node is
+ * exposed, so claims can be converted and walked without copying them first.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class NodeClaim implements Claim {
+
+    private final JsonNode node;
+    private final ObjectMapper mapper;
+
+    NodeClaim(JsonNode node, ObjectMapper mapper) {
+        this.node = node;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @return parsed node, which must not be modified
+     */
+    public JsonNode getNode() {
+        return node;
+    }
+
+    @Override
+    public boolean isNull() {
+        return node.isNull() || node.isMissingNode();
+    }
+
+    @Override
+    public Boolean asBoolean() {
+        return node.isBoolean() ? node.booleanValue() : null;
+    }
+
+    @Override
+    public Integer asInt() {
+        return node.isNumber() ? node.asInt() : null;
+    }
+
+    @Override
+    public Long asLong() {
+        return node.isNumber() ? node.asLong() : null;
+    }
+
+    @Override
+    public Double asDouble() {
+        return node.isNumber() ? node.asDouble() : null;
+    }
+
+    @Override
+    public String asString() {
+        return node.isTextual() ? node.textValue() : null;
+    }
+
+    @Override
+    public Date asDate() {
+        return node.canConvertToLong() ? new Date(node.asLong() * 1000) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] asArray(Class<T> tClazz) throws JWTDecodeException {
+        List<T> values = asList(tClazz);
+        if (values == null) {
+            return null;
+        }
+
+        return values.toArray((T[]) Array.newInstance(tClazz, values.size()));
+    }
+
+    @Override
+    public <T> List<T> asList(Class<T> tClazz) throws JWTDecodeException {
+        if (!node.isArray()) {
+            return null;
+        }
+
+        List<T> values = new ArrayList<>(node.size());
+        for (JsonNode element : node) {
+            try {
+                values.add(mapper.treeToValue(element, tClazz));
+            } catch (JsonProcessingException e) {
+                throw new JWTDecodeException("Couldn't map the Claim's array contents to " + tClazz.getSimpleName(), e);
+            }
+        }
+
+        return values;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> asMap() throws JWTDecodeException {
+        if (!node.isObject()) {
+            return null;
+        }
+
+        try {
+            return mapper.treeToValue(node, Map.class);
+        } catch (JsonProcessingException e) {
+            throw new JWTDecodeException("Couldn't map the Claim value to Map", e);
+        }
+    }
+
+    @Override
+    public <T> T as(Class<T> tClazz) throws JWTDecodeException {
+        try {
+            return isNull() ? null : mapper.treeToValue(node, tClazz);
+        } catch (JsonProcessingException e) {
+            throw new JWTDecodeException("Couldn't map the Claim value to " + tClazz.getSimpleName(), e);
+        }
+    }
+}
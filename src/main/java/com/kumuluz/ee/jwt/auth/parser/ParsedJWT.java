@@ -0,0 +1,356 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.parser;
+
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.impl.NullClaim;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token decoded in a single pass. The header and the payload are decoded from base64url and parsed once; the claims
+ * are created once from the parsed payload and passed on to the principal as they are. The encoded parts are kept, so
+ * the signature is verified over the original token.
+ * <p>
+ * The registered claims are validated while parsing, like {@link com.auth0.jwt.JWT#decode(String)} does. Malformed
+ * tokens can be rejected without an exception with {@link #tryParse(String)}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ParsedJWT implements DecodedJWT {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+    private static final Claim NULL_CLAIM = new NullClaim();
+
+    private final String token;
+    private final String header;
+    private final String payload;
+    private final String signature;
+    private final JsonNode headerNode;
+    private final Map<String, Claim> claims;
+    private final List<String> audience;
+
+    private ParsedJWT(String token, String header, String payload, String signature, JsonNode headerNode,
+                      Map<String, Claim> claims, List<String> audience) {
+        this.token = token;
+        this.header = header;
+        this.payload = payload;
+        this.signature = signature;
+        this.headerNode = headerNode;
+        this.claims = claims;
+        this.audience = audience;
+    }
+
+    /**
+     * Decodes a token without verifying it.
+     *
+     * @param token token
+     * @return decoded token
+     * @throws JWTDecodeException if the token is malformed
+     */
+    public static ParsedJWT parse(String token) throws JWTDecodeException {
+        return parse(token, true);
+    }
+
+    /**
+     * Decodes a token without verifying it. A malformed token is reported by returning null, so rejecting floods of
+     * malformed tokens doesn't create an exception for each of them. Only a part which decodes to something that
+     * starts like a JSON object but isn't valid JSON still makes the JSON parser throw internally.
+     *
+     * @param token token
+     * @return decoded token or null if the token is malformed
+     */
+    public static ParsedJWT tryParse(String token) {
+        return parse(token, false);
+    }
+
+    private static ParsedJWT parse(String token, boolean throwIfMalformed) {
+        if (token == null) {
+            return malformed(throwIfMalformed, "The token is null.", null);
+        }
+
+        int headerEnd = token.indexOf('.');
+        int payloadEnd = headerEnd < 0 ? -1 : token.indexOf('.', headerEnd + 1);
+        if (payloadEnd < 0 || token.indexOf('.', payloadEnd + 1) >= 0) {
+            return malformed(throwIfMalformed, "The token was expected to have 3 parts.", null);
+        }
+
+        String header = token.substring(0, headerEnd);
+        String payload = token.substring(headerEnd + 1, payloadEnd);
+        String signature = token.substring(payloadEnd + 1);
+
+        JsonNode headerNode = readObject(header, "header", throwIfMalformed);
+        JsonNode payloadNode = headerNode != null ? readObject(payload, "payload", throwIfMalformed) : null;
+        if (payloadNode == null) {
+            return null;
+        }
+
+        for (String claimName : new String[]{"iss", "sub", "jti"}) {
+            JsonNode node = payloadNode.get(claimName);
+            if (node != null && !node.isNull() && !node.isTextual()) {
+                return malformed(throwIfMalformed,
+                        String.format("The claim '%s' contained a non-string value.", claimName), null);
+            }
+        }
+
+        for (String claimName : new String[]{"exp", "nbf", "iat"}) {
+            JsonNode node = payloadNode.get(claimName);
+            if (node != null && !node.isNull() && !node.canConvertToLong()) {
+                return malformed(throwIfMalformed,
+                        String.format("The claim '%s' contained a non-numeric date value.", claimName), null);
+            }
+        }
+
+        JsonNode audienceNode = payloadNode.get("aud");
+        if (!isAudience(audienceNode)) {
+            return malformed(throwIfMalformed, "The claim 'aud' contained a non-string value.", null);
+        }
+
+        Map<String, Claim> claims = new LinkedHashMap<>(payloadNode.size() * 4 / 3 + 1);
+        Iterator<Map.Entry<String, JsonNode>> fields = payloadNode.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            claims.put(field.getKey(), new NodeClaim(field.getValue(), MAPPER));
+        }
+
+        return new ParsedJWT(token, header, payload, signature, headerNode, Collections.unmodifiableMap(claims),
+                readAudience(audienceNode));
+    }
+
+    private static <T> T malformed(boolean throwIfMalformed, String message, Throwable cause) {
+        if (throwIfMalformed) {
+            throw new JWTDecodeException(message, cause);
+        }
+
+        return null;
+    }
+
+    /**
+     * @return parsed JSON object or null if the part is malformed and {@code throwIfMalformed} is false
+     */
+    private static JsonNode readObject(String part, String partName, boolean throwIfMalformed) {
+        // checked up front, so neither the decoder nor the parser throws for input which obviously isn't a JSON object
+        byte[] decoded = decodeBase64Url(part);
+        if (decoded == null || !startsLikeObject(decoded)) {
+            return malformed(throwIfMalformed,
+                    String.format("The token's %s is not a valid base64url encoded JSON object.", partName), null);
+        }
+
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(decoded);
+        } catch (IOException e) {
+            return malformed(throwIfMalformed, String.format("The token's %s is not a valid base64url encoded JSON.",
+                    partName), e);
+        }
+
+        if (node == null || !node.isObject()) {
+            return malformed(throwIfMalformed, String.format("The token's %s is not a JSON object.", partName), null);
+        }
+
+        return node;
+    }
+
+    /**
+     * Decodes a base64url encoded value, with or without padding.
+     *
+     * @param value encoded value
+     * @return decoded bytes or null if the value is not base64url encoded
+     */
+    public static byte[] decodeBase64Url(String value) {
+        int length = value.length();
+        int padding = 0;
+        while (padding < 2 && length > 0 && value.charAt(length - 1) == '=') {
+            length--;
+            padding++;
+        }
+
+        if (length % 4 == 1 || padding > 0 && (length + padding) % 4 != 0) {
+            return null;
+        }
+
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                return null;
+            }
+        }
+
+        return DECODER.decode(value);
+    }
+
+    private static boolean startsLikeObject(byte[] json) {
+        for (byte b : json) {
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b == '{';
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isAudience(JsonNode node) {
+        if (node == null || node.isNull() || node.isTextual()) {
+            return true;
+        }
+
+        if (node.isArray()) {
+            for (JsonNode element : node) {
+                if (!element.isTextual()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    private static List<String> readAudience(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+
+        if (node.isTextual()) {
+            return Collections.singletonList(node.textValue());
+        }
+
+        List<String> audience = new ArrayList<>(node.size());
+        for (JsonNode element : node) {
+            audience.add(element.textValue());
+        }
+        return Collections.unmodifiableList(audience);
+    }
+
+    @Override
+    public String getToken() {
+        return token;
+    }
+
+    @Override
+    public String getHeader() {
+        return header;
+    }
+
+    @Override
+    public String getPayload() {
+        return payload;
+    }
+
+    @Override
+    public String getSignature() {
+        return signature;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return getHeaderString("alg");
+    }
+
+    @Override
+    public String getType() {
+        return getHeaderString("typ");
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeaderString("cty");
+    }
+
+    @Override
+    public String getKeyId() {
+        return getHeaderString("kid");
+    }
+
+    @Override
+    public Claim getHeaderClaim(String name) {
+        JsonNode node = headerNode.get(name);
+        return node != null && !node.isNull() ? new NodeClaim(node, MAPPER) : NULL_CLAIM;
+    }
+
+    @Override
+    public String getIssuer() {
+        return getClaim("iss").asString();
+    }
+
+    @Override
+    public String getSubject() {
+        return getClaim("sub").asString();
+    }
+
+    @Override
+    public List<String> getAudience() {
+        return audience;
+    }
+
+    @Override
+    public Date getExpiresAt() {
+        return getClaim("exp").asDate();
+    }
+
+    @Override
+    public Date getNotBefore() {
+        return getClaim("nbf").asDate();
+    }
+
+    @Override
+    public Date getIssuedAt() {
+        return getClaim("iat").asDate();
+    }
+
+    @Override
+    public String getId() {
+        return getClaim("jti").asString();
+    }
+
+    @Override
+    public Claim getClaim(String name) {
+        Claim claim = claims.get(name);
+        return claim != null && !claim.isNull() ? claim : NULL_CLAIM;
+    }
+
+    /**
+     * @return claims, including claims with null values; the map is created once and is not modifiable
+     */
+    @Override
+    public Map<String, Claim> getClaims() {
+        return claims;
+    }
+
+    private String getHeaderString(String name) {
+        JsonNode node = headerNode.get(name);
+        return node != null && node.isTextual() ? node.textValue() : null;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.principal;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Path to a claim nested in an object claim, e.g. {@code realm_access.roles}. Paths are either dot separated or JSON
+ * pointers ({@code /realm_access/roles}), which also allow claim names containing dots. Numeric segments select array
+ * elements.
+ * <p>
+ * A path is parsed once and evaluated against the parsed claims of each principal, see
+ * {@link JWTPrincipal#getClaimValue(ClaimPath)}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public final class ClaimPath {
+
+    private final String path;
+    private final String claimName;
+    private final String[] segments;
+
+    private ClaimPath(String path, String claimName, String[] segments) {
+        this.path = path;
+        this.claimName = claimName;
+        this.segments = segments;
+    }
+
+    /**
+     * Parses a claim path.
+     *
+     * @param path dot separated path or JSON pointer
+     * @return compiled path
+     * @throws IllegalArgumentException if the path is empty or contains empty segments
+     */
+    public static ClaimPath compile(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Claim path must not be empty.");
+        }
+
+        List<String> tokens = new ArrayList<>();
+        if (isPointer(path)) {
+            for (String token : path.substring(1).split("/", -1)) {
+                tokens.add(token.replace("~1", "/").replace("~0", "~"));
+            }
+        } else {
+            tokens.addAll(Arrays.asList(path.split("\\.", -1)));
+        }
+
+        if (tokens.contains("")) {
+            throw new IllegalArgumentException("Claim path " + path + " contains an empty segment.");
+        }
+
+        return new ClaimPath(path, tokens.get(0), tokens.subList(1, tokens.size()).toArray(new String[0]));
+    }
+
+    /**
+     * @param name claim name or path
+     * @return true if the name is a JSON pointer
+     */
+    public static boolean isPointer(String name) {
+        return name != null && name.length() > 1 && name.charAt(0) == '/';
+    }
+
+    /**
+     * @return name of the top level claim
+     */
+    public String getClaimName() {
+        return claimName;
+    }
+
+    /**
+     * @return true if the path selects a value nested in the top level claim
+     */
+    public boolean isNested() {
+        return segments.length > 0;
+    }
+
+    /**
+     * Selects the value of the path in a top level claim.
+     *
+     * @param claim parsed ({@link JsonNode}) or JSON-P claim
+     * @return selected value of the same representation or null if the path doesn't exist
+     */
+    Object select(Object claim) {
+        Object value = claim;
+        for (String segment : segments) {
+            if (value instanceof JsonNode) {
+                JsonNode node = (JsonNode) value;
+                value = node.isArray() ? node.get(toIndex(segment)) : node.get(segment);
+            } else if (value instanceof JsonObject) {
+                value = ((JsonObject) value).get(segment);
+            } else if (value instanceof JsonArray) {
+                int index = toIndex(segment);
+                value = index >= 0 && index < ((JsonArray) value).size() ? ((JsonArray) value).get(index) : null;
+            } else {
+                return null;
+            }
+        }
+
+        if (value instanceof JsonNode && (((JsonNode) value).isNull() || ((JsonNode) value).isMissingNode())) {
+            return null;
+        }
+
+        return JsonValue.NULL.equals(value) ? null : value;
+    }
+
+    private static int toIndex(String segment) {
+        if (segment.length() > 1 && segment.charAt(0) == '0') {
+            return -1;
+        }
+
+        for (int i = 0; i < segment.length(); i++) {
+            if (!Character.isDigit(segment.charAt(i))) {
+                return -1;
+            }
+        }
+
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof ClaimPath && path.equals(((ClaimPath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -21,7 +21,9 @@
 package com.kumuluz.ee.jwt.auth.principal;
 
 import com.auth0.jwt.interfaces.Claim;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.kumuluz.ee.jwt.auth.helper.ClaimHelper;
+import com.kumuluz.ee.jwt.auth.parser.NodeClaim;
 import org.eclipse.microprofile.jwt.Claims;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 
@@ -29,7 +31,10 @@ import javax.json.Json;
 import javax.json.JsonArray;
 import javax.json.JsonNumber;
 import javax.json.JsonString;
+import javax.json.JsonValue;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -43,18 +48,61 @@ public class JWTPrincipal implements JsonWebToken {
 
     private static final Logger LOG = Logger.getLogger(JWTPrincipal.class.getName());
 
-    private String name;
-    private String token;
-    private Map<String, Claim> originalClaims;
-    private Map<String, Object> convertedClaims;
-    private Map<String, Object> jsonClaims;
-
+    // marks a memoized absent groups claim
+    private static final Set<String> NO_GROUPS = Collections.unmodifiableSet(new HashSet<>());
+
+    private static final Claims[] STANDARD_CLAIM_TYPES = Claims.values();
+
+    private final String name;
+    private final String token;
+    private final ClaimPath groupsClaimPath;
+    /*
+     * Single claim store. A claim is kept as the original (parsed) claim until it is first read, then it is replaced by
+     * its JSON-P representation, from which all typed views are derived. Standard claims are indexed by their ordinal,
+     * custom claims by name. The raw token is not duplicated in the store.
+     */
+    private final AtomicReferenceArray<Object> standardClaims = new AtomicReferenceArray<>(STANDARD_CLAIM_TYPES.length);
+    private final Map<String, Object> customClaims;
+    private volatile Set<String> claimNames;
+    private volatile Set<String> groups;
+
+    /**
+     * Claims are converted on first access and memoized, so claims which are never read are never converted. The
+     * principal is thread safe, as it may be shared between requests by the token cache.
+     */
     public JWTPrincipal(String name, String token, Map<String, Claim> originalClaims) {
+        this(name, token, originalClaims, null);
+    }
+
+    /**
+     * @param groupsClaimPath path of the claim holding the groups or null to use the <i>groups</i> claim
+     */
+    public JWTPrincipal(String name, String token, Map<String, Claim> originalClaims, ClaimPath groupsClaimPath) {
         this.name = name;
         this.token = token;
-        this.originalClaims = originalClaims;
+        this.groupsClaimPath = groupsClaimPath;
+
+        Map<String, Object> custom = null;
+        for (Map.Entry<String, Claim> entry : originalClaims.entrySet()) {
+            if (entry.getValue() == null || entry.getValue().isNull()) {
+                continue;
+            }
+
+            Claims claimType = ClaimHelper.getClaimType(entry.getKey());
+            if (claimType == Claims.raw_token) {
+                continue;
+            }
 
-        convertClaims();
+            if (claimType != Claims.UNKNOWN) {
+                standardClaims.set(claimType.ordinal(), entry.getValue());
+            } else {
+                if (custom == null) {
+                    custom = new ConcurrentHashMap<>(originalClaims.size() * 4 / 3 + 1);
+                }
+                custom.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.customClaims = custom != null ? custom : Collections.emptyMap();
     }
 
     @Override
@@ -64,12 +112,27 @@ public class JWTPrincipal implements JsonWebToken {
 
     @Override
     public Set<String> getClaimNames() {
-        return jsonClaims.keySet();
+        Set<String> names = claimNames;
+
+        if (names == null) {
+            names = new HashSet<>(customClaims.keySet());
+            for (int i = 0; i < STANDARD_CLAIM_TYPES.length; i++) {
+                if (standardClaims.get(i) != null) {
+                    names.add(STANDARD_CLAIM_TYPES[i].name());
+                }
+            }
+            names.add(Claims.raw_token.name());
+
+            names = Collections.unmodifiableSet(names);
+            claimNames = names;
+        }
+
+        return names;
     }
 
     @Override
     public String getSubject() {
-        JsonString subject = (JsonString) jsonClaims.get(Claims.sub.name());
+        JsonString subject = (JsonString) getJsonClaim(Claims.sub);
         if (subject == null) {
             return null;
         }
@@ -79,7 +142,7 @@ public class JWTPrincipal implements JsonWebToken {
 
     @Override
     public String getTokenID() {
-        JsonString tokenId = (JsonString) jsonClaims.get(Claims.jti.name());
+        JsonString tokenId = (JsonString) getJsonClaim(Claims.jti);
         if (tokenId == null) {
             return null;
         }
@@ -89,7 +152,7 @@ public class JWTPrincipal implements JsonWebToken {
 
     @Override
     public String getIssuer() {
-        JsonString issuer = (JsonString) jsonClaims.get(Claims.iss.name());
+        JsonString issuer = (JsonString) getJsonClaim(Claims.iss);
         if (issuer == null) {
             return null;
         }
@@ -99,33 +162,32 @@ public class JWTPrincipal implements JsonWebToken {
 
     @Override
     public Set<String> getAudience() {
-        JsonString audience = (JsonString) jsonClaims.get(Claims.aud.name());
-        if (audience != null) {
-            return Collections.singleton(audience.getString());
+        JsonValue audience = getJsonClaim(Claims.aud);
+        if (audience instanceof JsonString) {
+            return Collections.singleton(((JsonString) audience).getString());
         }
 
-        JsonArray audienceArray = (JsonArray) jsonClaims.get(Claims.aud.name());
-        if (audienceArray != null) {
-            return audienceArray.getValuesAs(JsonString.class).stream().map(JsonString::getString).collect(Collectors.toSet());
+        if (audience instanceof JsonArray) {
+            return ((JsonArray) audience).getValuesAs(JsonString.class).stream().map(JsonString::getString).collect(Collectors.toSet());
         }
 
         return null;
     }
 
     private JsonArray getAudienceAsJsonArray() {
-        JsonString audience = (JsonString) jsonClaims.get(Claims.aud.name());
-        if (audience != null) {
+        JsonValue audience = getJsonClaim(Claims.aud);
+        if (audience instanceof JsonString) {
             return Json.createArrayBuilder()
-                    .add(audience.getString())
+                    .add(((JsonString) audience).getString())
                     .build();
         }
 
-        return (JsonArray) jsonClaims.get(Claims.aud.name());
+        return (JsonArray) audience;
     }
 
     @Override
     public long getExpirationTime() {
-        JsonNumber expirationType = (JsonNumber) jsonClaims.get(Claims.exp.name());
+        JsonNumber expirationType = (JsonNumber) getJsonClaim(Claims.exp);
         if (expirationType == null) {
             return 0;
         }
@@ -135,7 +197,7 @@ public class JWTPrincipal implements JsonWebToken {
 
     @Override
     public long getIssuedAtTime() {
-        JsonNumber issuedAtTime = (JsonNumber) jsonClaims.get(Claims.iat.name());
+        JsonNumber issuedAtTime = (JsonNumber) getJsonClaim(Claims.iat);
         if (issuedAtTime == null) {
             return 0;
         }
@@ -145,37 +207,56 @@ public class JWTPrincipal implements JsonWebToken {
 
     @Override
     public String getRawToken() {
-        JsonString rawToken = (JsonString) jsonClaims.get(Claims.raw_token.name());
-        if (rawToken == null) {
-            return null;
-        }
-
-        return rawToken.getString();
+        return token;
     }
 
+    /**
+     * Returns the groups as an immutable set, which is computed once per principal and shared by the security context
+     * and role checks.
+     */
     @Override
     public Set<String> getGroups() {
-        JsonArray groupList = (JsonArray) jsonClaims.get(Claims.groups.name());
+        Set<String> groupSet = groups;
+
+        if (groupSet == null) {
+            List<String> groupNames = null;
+            if (groupsClaimPath != null) {
+                Object groupList = selectClaim(groupsClaimPath);
+                if (groupList instanceof JsonNode && ((JsonNode) groupList).isArray() || groupList instanceof JsonArray) {
+                    groupNames = toStringList(groupList);
+                }
+            } else {
+                JsonValue groupList = getJsonClaim(Claims.groups);
+                if (groupList instanceof JsonArray) {
+                    groupNames = toStringList(groupList);
+                }
+            }
 
-        if (groupList == null) {
-            return null;
+            groupSet = groupNames != null ? Collections.unmodifiableSet(new HashSet<>(groupNames)) : NO_GROUPS;
+            groups = groupSet;
         }
 
-        return groupList.getValuesAs(JsonString.class).stream().map(JsonString::getString).collect(Collectors.toSet());
+        return groupSet == NO_GROUPS ? null : groupSet;
+    }
+
+    /**
+     * Checks group membership in constant time.
+     *
+     * @param group group name
+     * @return true if the principal is a member of the group
+     */
+    public boolean isInGroup(String group) {
+        Set<String> groupSet = getGroups();
+        return groupSet != null && groupSet.contains(group);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T> T getClaim(String claimName) {
-        Claims claimType = Claims.UNKNOWN;
+        Claims claimType = ClaimHelper.getClaimType(claimName);
         T claim = null;
-        try {
-            claimType = Claims.valueOf(claimName);
-        } catch (IllegalArgumentException e) {
-            // ignore
-        }
 
-        if (claimType.equals(Claims.UNKNOWN) && !jsonClaims.containsKey(claimName)) {
+        if (claimType.equals(Claims.UNKNOWN) && getJsonClaim(claimName) == null) {
             LOG.fine(String.format("No claim with name '%s' found.", claimName));
             return null;
         }
@@ -194,10 +275,8 @@ public class JWTPrincipal implements JsonWebToken {
             case auth_time:
             case nbf:
             case updated_at:
-                claim = (T) convertedClaims.get(claimType.name());
-                if (claim == null) {
-                    claim = (T) new Long(0);
-                }
+                JsonValue timestamp = getJsonClaim(claimType);
+                claim = (T) (Long) (timestamp instanceof JsonNumber ? ((JsonNumber) timestamp).longValue() : 0L);
                 break;
             case groups:
                 claim = (T) getGroups();
@@ -207,7 +286,7 @@ public class JWTPrincipal implements JsonWebToken {
                 break;
             case UNKNOWN:
             default:
-                claim = (T) jsonClaims.get(claimName);
+                claim = (T) getJsonClaim(claimName);
                 if (claim instanceof JsonString) {
                     claim = (T) ((JsonString) claim).getString();
                 }
@@ -218,15 +297,10 @@ public class JWTPrincipal implements JsonWebToken {
 
     @SuppressWarnings("unchecked")
     public <T> T getClaimForInjection(String claimName) {
-        Claims claimType = Claims.UNKNOWN;
+        Claims claimType = ClaimHelper.getClaimType(claimName);
         T claim = null;
-        try {
-            claimType = Claims.valueOf(claimName);
-        } catch (IllegalArgumentException e) {
-            // ignore
-        }
 
-        if (claimType.equals(Claims.UNKNOWN) && !jsonClaims.containsKey(claimName)) {
+        if (claimType.equals(Claims.UNKNOWN) && getJsonClaim(claimName) == null) {
             LOG.fine(String.format("No claim with name '%s' found.", claimName));
             return null;
         }
@@ -235,56 +309,260 @@ public class JWTPrincipal implements JsonWebToken {
             case aud:
                 claim = (T) getAudienceAsJsonArray();
                 break;
+            case groups:
+                claim = (T) (groupsClaimPath != null ? getClaimValue(groupsClaimPath) : getJsonClaim(claimType));
+                break;
             case UNKNOWN:
             default:
-                claim = (T) jsonClaims.get(claimName);
+                claim = (T) getJsonClaim(claimName);
         }
 
         return claim;
     }
 
-    @SuppressWarnings("unchecked")
-    private void convertClaims() {
-        convertedClaims = new HashMap<>();
-        jsonClaims = new HashMap<>();
+    /**
+     * Returns a claim as a string, reading it from the parsed token if it was not converted to JSON-P yet. Typed
+     * accessors don't memoize the JSON-P representation and are used by claim projections.
+     *
+     * @param claimName claim name
+     * @return claim value or null if the claim is missing or not a string
+     */
+    public String getClaimAsString(String claimName) {
+        if (Claims.raw_token.name().equals(claimName)) {
+            return token;
+        }
 
-        Object claimValue;
-        for (Map.Entry<String, Claim> entry : originalClaims.entrySet()) {
-            if ((claimValue = entry.getValue().asBoolean()) != null) {
-                convertedClaims.put(entry.getKey(), claimValue);
-            } else if ((claimValue = entry.getValue().asList(Object.class)) != null) {
-                convertedClaims.put(entry.getKey(), claimValue);
-            } else if (entry.getValue().asDouble() != null || entry.getValue().asLong() != null || entry.getValue().asInt() != null) {
-                convertedClaims.put(entry.getKey(), entry.getValue().as(Number.class));
-            } else if ((claimValue = entry.getValue().asMap()) != null) {
-                convertedClaims.put(entry.getKey(), claimValue);
-            } else if ((claimValue = entry.getValue().asString()) != null) {
-                convertedClaims.put(entry.getKey(), claimValue);
+        Object claim = getStoredClaim(claimName);
+        if (claim instanceof Claim) {
+            return ((Claim) claim).asString();
+        }
+
+        return claim instanceof JsonString ? ((JsonString) claim).getString() : null;
+    }
+
+    /**
+     * @param claimName claim name
+     * @return claim value or null if the claim is missing or not a number
+     * @see #getClaimAsString(String)
+     */
+    public Long getClaimAsLong(String claimName) {
+        Object claim = getStoredClaim(claimName);
+        if (claim instanceof Claim) {
+            return ((Claim) claim).asLong();
+        }
+
+        return claim instanceof JsonNumber ? ((JsonNumber) claim).longValue() : null;
+    }
+
+    /**
+     * @param claimName claim name
+     * @return claim value or null if the claim is missing or not a number
+     * @see #getClaimAsString(String)
+     */
+    public Double getClaimAsDouble(String claimName) {
+        Object claim = getStoredClaim(claimName);
+        if (claim instanceof Claim) {
+            return ((Claim) claim).asDouble();
+        }
+
+        return claim instanceof JsonNumber ? ((JsonNumber) claim).doubleValue() : null;
+    }
+
+    /**
+     * @param claimName claim name
+     * @return claim value or null if the claim is missing or not a boolean
+     * @see #getClaimAsString(String)
+     */
+    public Boolean getClaimAsBoolean(String claimName) {
+        Object claim = getStoredClaim(claimName);
+        if (claim instanceof Claim) {
+            return ((Claim) claim).asBoolean();
+        }
+
+        if (JsonValue.TRUE.equals(claim)) {
+            return Boolean.TRUE;
+        }
+
+        return JsonValue.FALSE.equals(claim) ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Returns an array claim as a list of strings. A string claim is returned as a single element list, as the
+     * <i>aud</i> claim may be either.
+     *
+     * @param claimName claim name
+     * @return claim value or null if the claim is missing or neither an array nor a string
+     * @see #getClaimAsString(String)
+     */
+    public List<String> getClaimAsStringList(String claimName) {
+        Object claim = getStoredClaim(claimName);
+        if (claim instanceof Claim) {
+            List<String> values = ((Claim) claim).asList(String.class);
+            if (values == null && ((Claim) claim).asString() != null) {
+                return Collections.singletonList(((Claim) claim).asString());
+            }
+            return values;
+        }
+
+        return toStringList(claim);
+    }
+
+    /**
+     * Returns the value of a claim path as JSON-P. The path is evaluated against the parsed claim, only the selected
+     * value is converted.
+     *
+     * @param claimPath claim path
+     * @return selected value or null if the path doesn't exist
+     */
+    public JsonValue getClaimValue(ClaimPath claimPath) {
+        if (!claimPath.isNested()) {
+            return getJsonClaim(claimPath.getClaimName());
+        }
+
+        Object value = selectClaim(claimPath);
+        return value instanceof JsonNode ? ClaimHelper.convertNode((JsonNode) value) : (JsonValue) value;
+    }
+
+    /**
+     * Returns the value of a claim path as a list of strings, without converting it to JSON-P.
+     *
+     * @param claimPath claim path
+     * @return selected value or null if the path doesn't exist or selects neither an array nor a string
+     * @see #getClaimAsStringList(String)
+     */
+    public List<String> getClaimAsStringList(ClaimPath claimPath) {
+        if (!claimPath.isNested()) {
+            return getClaimAsStringList(claimPath.getClaimName());
+        }
+
+        return toStringList(selectClaim(claimPath));
+    }
+
+    private Object selectClaim(ClaimPath claimPath) {
+        Object claim = getStoredClaim(claimPath.getClaimName());
+        if (claim instanceof NodeClaim) {
+            // the parsed tree of the top level claim is walked, so the claim is not converted to JSON-P
+            claim = ((NodeClaim) claim).getNode();
+        } else if (claim instanceof Claim) {
+            claim = ((Claim) claim).as(JsonNode.class);
+        }
+
+        return claimPath.select(claim);
+    }
+
+    private static List<String> toStringList(Object value) {
+        if (value instanceof JsonNode) {
+            JsonNode node = (JsonNode) value;
+            if (node.isTextual()) {
+                return Collections.singletonList(node.textValue());
+            }
+            if (!node.isArray()) {
+                return null;
+            }
+
+            List<String> values = new ArrayList<>(node.size());
+            for (JsonNode element : node) {
+                values.add(element.isTextual() ? element.textValue() : element.toString());
+            }
+            return values;
+        }
+
+        if (value instanceof JsonString) {
+            return Collections.singletonList(((JsonString) value).getString());
+        }
+
+        if (value instanceof JsonArray) {
+            List<String> values = new ArrayList<>(((JsonArray) value).size());
+            for (JsonValue element : (JsonArray) value) {
+                values.add(element instanceof JsonString ? ((JsonString) element).getString() : element.toString());
+            }
+            return values;
+        }
+
+        return null;
+    }
+
+    private Object getStoredClaim(String claimName) {
+        Claims claimType = ClaimHelper.getClaimType(claimName);
+        if (claimType != Claims.UNKNOWN) {
+            return standardClaims.get(claimType.ordinal());
+        }
+
+        return customClaims.get(claimName);
+    }
+
+    private JsonValue getJsonClaim(String claimName) {
+        Claims claimType = ClaimHelper.getClaimType(claimName);
+        if (claimType != Claims.UNKNOWN) {
+            return getJsonClaim(claimType);
+        }
+
+        Object claim = customClaims.get(claimName);
+        if (claim instanceof Claim) {
+            JsonValue jsonClaim = toJson((Claim) claim);
+            if (jsonClaim != null) {
+                customClaims.replace(claimName, claim, jsonClaim);
             }
+            return jsonClaim;
         }
 
-        convertedClaims.put(Claims.raw_token.name(), token);
-
-        for(String claimName : originalClaims.keySet()) {
-            Object claim = convertedClaims.get(claimName);
-            if (claim instanceof String) {
-                String str = (String) claim;
-                jsonClaims.put(claimName, ClaimHelper.convertString(str));
-            } else if (claim instanceof Boolean) {
-                Boolean bool = (Boolean) claim;
-                jsonClaims.put(claimName, ClaimHelper.convertBoolean(bool));
-            } else if(claim instanceof List) {
-                Collection collection = (Collection) claim;
-                jsonClaims.put(claimName, ClaimHelper.convertCollection(collection));
-            } else if(claim instanceof Map) {
-                Map map = (Map) claim;
-                jsonClaims.put(claimName, ClaimHelper.convertMap(map));
-            } else if(claim instanceof Number) {
-                Number number = (Number) claim;
-                jsonClaims.put(claimName, ClaimHelper.convertNumber(number));
+        return (JsonValue) claim;
+    }
+
+    private JsonValue getJsonClaim(Claims claimType) {
+        if (claimType == Claims.raw_token) {
+            return ClaimHelper.convertString(token);
+        }
+
+        Object claim = standardClaims.get(claimType.ordinal());
+        if (claim instanceof Claim) {
+            JsonValue jsonClaim = toJson((Claim) claim);
+            if (jsonClaim != null) {
+                standardClaims.compareAndSet(claimType.ordinal(), claim, jsonClaim);
             }
+            return jsonClaim;
         }
 
-        jsonClaims.put(Claims.raw_token.name(), ClaimHelper.convertString(token));
+        return (JsonValue) claim;
+    }
+
+    private static JsonValue toJson(Claim claim) {
+        if (claim instanceof NodeClaim) {
+            return ClaimHelper.convertNode(((NodeClaim) claim).getNode());
+        }
+
+        return convertToJson(convertClaim(claim));
+    }
+
+    private static Object convertClaim(Claim claim) {
+        Object claimValue;
+        if ((claimValue = claim.asBoolean()) != null) {
+            return claimValue;
+        } else if ((claimValue = claim.asList(Object.class)) != null) {
+            return claimValue;
+        } else if (claim.asDouble() != null || claim.asLong() != null || claim.asInt() != null) {
+            return claim.as(Number.class);
+        } else if ((claimValue = claim.asMap()) != null) {
+            return claimValue;
+        } else {
+            return claim.asString();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JsonValue convertToJson(Object claim) {
+        if (claim instanceof String) {
+            return ClaimHelper.convertString((String) claim);
+        } else if (claim instanceof Boolean) {
+            return ClaimHelper.convertBoolean((Boolean) claim);
+        } else if (claim instanceof List) {
+            return ClaimHelper.convertCollection((Collection) claim);
+        } else if (claim instanceof Map) {
+            return ClaimHelper.convertMap((Map) claim);
+        } else if (claim instanceof Number) {
+            return ClaimHelper.convertNumber((Number) claim);
+        }
+
+        return null;
     }
 }
@@ -1,5 +1,6 @@
 package com.kumuluz.ee.jwt.auth.processor;
 
+import com.kumuluz.ee.jwt.auth.projection.ClaimProjection;
 import org.eclipse.microprofile.auth.LoginConfig;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -22,7 +23,7 @@ import java.util.Set;
 import java.util.logging.Logger;
 
 /**
- * Compile-time annotation processor for LoginConfig. Generates a service file.
+ * Compile-time annotation processor for LoginConfig and ClaimProjection. Generates service files and claim binders.
  *
  * @author Benjamin Kastelic
  */
@@ -33,6 +34,7 @@ public class AnnotationProcessor extends AbstractProcessor {
     private static final String MP_JWT_AUTH_METHOD = "MP-JWT";
 
     private Filer filer;
+    private ClaimBinderGenerator claimBinderGenerator;
 
     @Override
     public SourceVersion getSupportedSourceVersion() {
@@ -48,6 +50,7 @@ public class AnnotationProcessor extends AbstractProcessor {
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
         filer = processingEnv.getFiler();
+        claimBinderGenerator = new ClaimBinderGenerator(processingEnv);
     }
 
     @Override
@@ -64,10 +67,25 @@ public class AnnotationProcessor extends AbstractProcessor {
                 .filter(this::isMpJwtAuthEnabled)
                 .forEach(element -> extractElementName(mpJwtApplicationElementNames, element));
 
+        // binders of classes and interfaces with @ClaimProjection annotation
+        Set<String> claimBinderNames = new HashSet<>();
+
         try {
+            for (Element element : roundEnvironment.getElementsAnnotatedWith(ClaimProjection.class)) {
+                if (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.INTERFACE) {
+                    String binderName = claimBinderGenerator.generate((TypeElement) element);
+                    if (binderName != null) {
+                        claimBinderNames.add(binderName);
+                    }
+                }
+            }
+
             if (!mpJwtApplicationElementNames.isEmpty()) {
                 writeFile(mpJwtApplicationElementNames, "META-INF/services/javax.ws.rs.core.Application");
             }
+            if (!claimBinderNames.isEmpty()) {
+                writeFile(claimBinderNames, "META-INF/services/com.kumuluz.ee.jwt.auth.projection.ClaimBinder");
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
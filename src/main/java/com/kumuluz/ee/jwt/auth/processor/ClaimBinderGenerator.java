@@ -0,0 +1,312 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.processor;
+
+import com.kumuluz.ee.jwt.auth.projection.ClaimBinders;
+import com.kumuluz.ee.jwt.auth.projection.ClaimProjection;
+import com.kumuluz.ee.jwt.auth.projection.ProjectedType;
+import org.eclipse.microprofile.jwt.Claim;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates binders of {@link ClaimProjection} types, which assign the claims to fields (classes) or return them from
+ * getters (interfaces) without reflection. Types which can't be bound by generated code, such as classes with private
+ * fields, are skipped and bound reflectively at runtime.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+class ClaimBinderGenerator {
+
+    private final ProcessingEnvironment processingEnv;
+    private final Elements elements;
+    private final Messager messager;
+
+    ClaimBinderGenerator(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+        this.elements = processingEnv.getElementUtils();
+        this.messager = processingEnv.getMessager();
+    }
+
+    /**
+     * Generates the binder of a projection type.
+     *
+     * @param type projection type
+     * @return binary name of the generated binder or null if no binder was generated
+     * @throws IOException if the binder couldn't be written
+     */
+    String generate(TypeElement type) throws IOException {
+        if (!isValid(type)) {
+            return null;
+        }
+
+        List<Member> members = type.getKind() == ElementKind.INTERFACE ? getMethods(type) : getFields(type);
+        if (members == null) {
+            return null;
+        }
+
+        String binderName = ClaimBinders.getBinderName(elements.getBinaryName(type).toString());
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String binderSimpleName = packageName.isEmpty() ? binderName : binderName.substring(packageName.length() + 1);
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(binderName, type).openWriter()) {
+            writer.write(type.getKind() == ElementKind.INTERFACE
+                    ? generateInterfaceBinder(packageName, binderSimpleName, type.getQualifiedName().toString(), members)
+                    : generateClassBinder(packageName, binderSimpleName, type.getQualifiedName().toString(), members));
+        }
+
+        return binderName;
+    }
+
+    private boolean isValid(TypeElement type) {
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "@ClaimProjection type must not be generic.");
+            return false;
+        }
+
+        if (type.getKind() == ElementKind.CLASS && type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@ClaimProjection class must not be abstract.");
+            return false;
+        }
+
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                note(type, "@ClaimProjection type is private, it will be bound reflectively.");
+                return false;
+            }
+
+            if (element.getKind() == ElementKind.CLASS && element.getEnclosingElement() instanceof TypeElement &&
+                    !element.getModifiers().contains(Modifier.STATIC)) {
+                error(type, "Nested @ClaimProjection class must be static.");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private List<Member> getFields(TypeElement type) {
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                    note(type, "@ClaimProjection constructor is private, the class will be bound reflectively.");
+                    return null;
+                }
+                hasConstructor = true;
+            }
+        }
+
+        if (!hasConstructor) {
+            error(type, "@ClaimProjection class must have a constructor without parameters.");
+            return null;
+        }
+
+        List<Member> members = new ArrayList<>();
+        boolean valid = true;
+        boolean accessible = true;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                error(field, "@ClaimProjection field must not be final.");
+                valid = false;
+                continue;
+            }
+
+            Member member = toMember(field, field.asType().toString(), field.getSimpleName().toString());
+            if (member == null) {
+                valid = false;
+                continue;
+            }
+
+            accessible &= !field.getModifiers().contains(Modifier.PRIVATE);
+            members.add(member);
+        }
+
+        if (valid && !accessible) {
+            note(type, "@ClaimProjection class has private fields, it will be bound reflectively.");
+        }
+
+        return valid && accessible ? members : null;
+    }
+
+    private List<Member> getMethods(TypeElement type) {
+        List<Member> members = new ArrayList<>();
+        boolean valid = true;
+        for (ExecutableElement method : ElementFilter.methodsIn(elements.getAllMembers(type))) {
+            if (method.getEnclosingElement().getKind() != ElementKind.INTERFACE ||
+                    !method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+
+            if (!method.getParameters().isEmpty()) {
+                error(method, "@ClaimProjection method must not have parameters.");
+                valid = false;
+                continue;
+            }
+
+            Member member = toMember(method, method.getReturnType().toString(),
+                    ClaimBinders.getPropertyName(method.getSimpleName().toString()));
+            if (member == null) {
+                valid = false;
+                continue;
+            }
+
+            members.add(member);
+        }
+
+        return valid ? members : null;
+    }
+
+    private Member toMember(Element element, String typeName, String defaultClaimName) {
+        ProjectedType projectedType = ProjectedType.of(typeName);
+        if (projectedType == null) {
+            error(element, "Unsupported @ClaimProjection type " + typeName + ".");
+            return null;
+        }
+
+        try {
+            String claimName = ClaimBinders.getClaimName(element.getAnnotation(Claim.class), defaultClaimName);
+            return new Member(element.getSimpleName().toString(), elements.getConstantExpression(claimName),
+                    projectedType);
+        } catch (IllegalArgumentException e) {
+            error(element, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String generateClassBinder(String packageName, String binderName, String typeName,
+                                              List<Member> members) {
+        StringBuilder source = new StringBuilder();
+        appendHeader(source, packageName, binderName, typeName);
+
+        source.append("    @Override\n")
+                .append("    public ").append(typeName).append(" bind(JWTPrincipal principal) {\n")
+                .append("        ").append(typeName).append(" projection = new ").append(typeName).append("();\n");
+        for (Member member : members) {
+            source.append("        projection.").append(member.name).append(" = ")
+                    .append(member.type.toSource("principal", member.claimNameLiteral)).append(";\n");
+        }
+        source.append("        return projection;\n")
+                .append("    }\n")
+                .append("}\n");
+
+        return source.toString();
+    }
+
+    private static String generateInterfaceBinder(String packageName, String binderName, String typeName,
+                                                  List<Member> members) {
+        StringBuilder source = new StringBuilder();
+        appendHeader(source, packageName, binderName, typeName);
+
+        source.append("    @Override\n")
+                .append("    public ").append(typeName).append(" bind(JWTPrincipal principal) {\n")
+                .append("        return new Projection(");
+        for (int i = 0; i < members.size(); i++) {
+            Member member = members.get(i);
+            source.append(i > 0 ? ",\n                " : "\n                ")
+                    .append(member.type.toSource("principal", member.claimNameLiteral));
+        }
+        source.append(");\n")
+                .append("    }\n\n");
+
+        source.append("    private static final class Projection implements ").append(typeName).append(" {\n\n");
+        for (int i = 0; i < members.size(); i++) {
+            source.append("        private final ").append(members.get(i).type.getTypeName()).append(" value").append(i)
+                    .append(";\n");
+        }
+        source.append("\n        Projection(");
+        for (int i = 0; i < members.size(); i++) {
+            source.append(i > 0 ? ", " : "").append(members.get(i).type.getTypeName()).append(" value").append(i);
+        }
+        source.append(") {\n");
+        for (int i = 0; i < members.size(); i++) {
+            source.append("            this.value").append(i).append(" = value").append(i).append(";\n");
+        }
+        source.append("        }\n");
+        for (int i = 0; i < members.size(); i++) {
+            source.append("\n        @Override\n")
+                    .append("        public ").append(members.get(i).type.getTypeName()).append(" ")
+                    .append(members.get(i).name).append("() {\n")
+                    .append("            return value").append(i).append(";\n")
+                    .append("        }\n");
+        }
+        source.append("    }\n")
+                .append("}\n");
+
+        return source.toString();
+    }
+
+    private static void appendHeader(StringBuilder source, String packageName, String binderName, String typeName) {
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        source.append("import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;\n")
+                .append("import com.kumuluz.ee.jwt.auth.projection.ClaimBinder;\n")
+                .append("import com.kumuluz.ee.jwt.auth.projection.ProjectedType;\n\n")
+                .append("public final class ").append(binderName).append(" implements ClaimBinder<").append(typeName)
+                .append("> {\n\n")
+                .append("    @Override\n")
+                .append("    public Class<").append(typeName).append("> getType() {\n")
+                .append("        return ").append(typeName).append(".class;\n")
+                .append("    }\n\n");
+    }
+
+    private void error(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private void note(Element element, String message) {
+        messager.printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    private static class Member {
+
+        private final String name;
+        private final String claimNameLiteral;
+        private final ProjectedType type;
+
+        Member(String name, String claimNameLiteral, ProjectedType type) {
+            this.name = name;
+            this.claimNameLiteral = claimNameLiteral;
+            this.type = type;
+        }
+    }
+}
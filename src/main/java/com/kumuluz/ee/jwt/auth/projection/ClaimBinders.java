@@ -0,0 +1,166 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.projection;
+
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.eclipse.microprofile.jwt.Claim;
+import org.eclipse.microprofile.jwt.Claims;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import java.util.logging.Logger;
+
+/**
+ * Resolves the binders of {@link ClaimProjection} types. A binder generated at compile time is used if present,
+ * otherwise a reflective binder is compiled. Either way the binder is resolved once per type.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public final class ClaimBinders {
+
+    private static final Logger LOG = Logger.getLogger(ClaimBinders.class.getName());
+
+    private static final String BINDER_SUFFIX = "_ClaimBinder";
+
+    private static final ClassValue<ClaimBinder<?>> BINDERS = new ClassValue<ClaimBinder<?>>() {
+        @Override
+        protected ClaimBinder<?> computeValue(Class<?> type) {
+            return createBinder(type);
+        }
+    };
+
+    private ClaimBinders() {
+    }
+
+    /**
+     * Returns the binder of a projection type.
+     *
+     * @param type projection type
+     * @param <T> projection type
+     * @return binder
+     * @throws IllegalArgumentException if the type is not a valid projection
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ClaimBinder<T> get(Class<T> type) {
+        return (ClaimBinder<T>) BINDERS.get(type);
+    }
+
+    /**
+     * Projects the claims of a token.
+     *
+     * @param principal token, may be null
+     * @param type projection type
+     * @param <T> projection type
+     * @return projection or null if the token is null
+     * @throws IllegalArgumentException if the type is not a valid projection
+     */
+    public static <T> T project(JsonWebToken principal, Class<T> type) {
+        ClaimBinder<T> binder = get(type);
+        if (principal == null) {
+            return null;
+        }
+
+        if (!(principal instanceof JWTPrincipal)) {
+            throw new IllegalArgumentException("Claims can only be projected from a " + JWTPrincipal.class.getName() + ".");
+        }
+
+        return binder.bind((JWTPrincipal) principal);
+    }
+
+    /**
+     * Returns the name of the generated binder of a projection type. Binders are generated in the package of the
+     * projection, with the names of nested types joined by an underscore, e.g. {@code Outer_Inner_ClaimBinder}.
+     *
+     * @param binaryName binary name of the projection type
+     * @return binary name of the binder
+     */
+    public static String getBinderName(String binaryName) {
+        int packageEnd = binaryName.lastIndexOf('.');
+        return binaryName.substring(0, packageEnd + 1) + binaryName.substring(packageEnd + 1).replace('$', '_') +
+                BINDER_SUFFIX;
+    }
+
+    /**
+     * Resolves the claim bound to a member.
+     *
+     * @param claim {@link Claim} annotation of the member, may be null
+     * @param defaultName claim name used if the annotation doesn't name the claim
+     * @return claim name
+     * @throws IllegalArgumentException if the annotation is ambiguous
+     */
+    public static String getClaimName(Claim claim, String defaultName) {
+        if (claim == null) {
+            return defaultName;
+        }
+
+        if (!claim.value().isEmpty() && !claim.standard().equals(Claims.UNKNOWN)) {
+            throw new IllegalArgumentException("Ambiguous use of @Claim; only one of the parameters is allowed at any " +
+                    "one time.");
+        }
+
+        if (!claim.value().isEmpty()) {
+            return claim.value();
+        }
+
+        return claim.standard().equals(Claims.UNKNOWN) ? defaultName : claim.standard().name();
+    }
+
+    /**
+     * Returns the property name of a getter, e.g. {@code customerId} for {@code getCustomerId}.
+     *
+     * @param methodName method name
+     * @return property name or the method name if the method is not a getter
+     */
+    public static String getPropertyName(String methodName) {
+        String property;
+        if (methodName.startsWith("get") && methodName.length() > 3) {
+            property = methodName.substring(3);
+        } else if (methodName.startsWith("is") && methodName.length() > 2) {
+            property = methodName.substring(2);
+        } else {
+            return methodName;
+        }
+
+        if (!Character.isUpperCase(property.charAt(0))) {
+            return methodName;
+        }
+
+        return Character.toLowerCase(property.charAt(0)) + property.substring(1);
+    }
+
+    private static ClaimBinder<?> createBinder(Class<?> type) {
+        if (type.getAnnotation(ClaimProjection.class) == null) {
+            throw new IllegalArgumentException(type.getName() + " is not annotated with @ClaimProjection.");
+        }
+
+        ClassLoader classLoader = type.getClassLoader() != null ? type.getClassLoader() : ClaimBinders.class.getClassLoader();
+        try {
+            Class<?> binderClass = Class.forName(getBinderName(type.getName()), true, classLoader);
+            return (ClaimBinder<?>) binderClass.getConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            LOG.fine(String.format("No generated binder found for %s, compiling a reflective binder.", type.getName()));
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Generated binder of " + type.getName() + " couldn't be instantiated.", e);
+        }
+
+        return ReflectiveClaimBinder.compile(type);
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.projection;
+
+import org.eclipse.microprofile.jwt.Claim;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or an interface into which the claims of a token are projected. Each field of a class and each getter
+ * of an interface is bound to the claim named by its {@link Claim} annotation, or to the claim with the same (property)
+ * name if the member is not annotated.
+ * <p>
+ * Projections can be injected into request scoped beans or created with
+ * {@link ClaimBinders#project(org.eclipse.microprofile.jwt.JsonWebToken, Class)}. Their binders are generated at
+ * compile time; if a class can't be bound by generated code (e.g. it has private fields), it is bound reflectively with
+ * a binder compiled once per class.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ClaimProjection {
+}
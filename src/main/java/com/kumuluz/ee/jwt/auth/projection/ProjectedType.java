@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.projection;
+
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Types a claim can be projected to, with the accessor used by reflective binders and the equivalent source used by
+ * generated binders.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public enum ProjectedType {
+
+    STRING("java.lang.String", "%1$s.getClaimAsString(%2$s)", JWTPrincipal::getClaimAsString),
+    LONG("java.lang.Long", "%1$s.getClaimAsLong(%2$s)", JWTPrincipal::getClaimAsLong),
+    LONG_PRIMITIVE("long", "ProjectedType.longValue(%1$s.getClaimAsLong(%2$s))",
+            (principal, claimName) -> longValue(principal.getClaimAsLong(claimName))),
+    INTEGER("java.lang.Integer", "ProjectedType.integerValue(%1$s.getClaimAsLong(%2$s))",
+            (principal, claimName) -> integerValue(principal.getClaimAsLong(claimName))),
+    INTEGER_PRIMITIVE("int", "ProjectedType.intValue(%1$s.getClaimAsLong(%2$s))",
+            (principal, claimName) -> intValue(principal.getClaimAsLong(claimName))),
+    DOUBLE("java.lang.Double", "%1$s.getClaimAsDouble(%2$s)", JWTPrincipal::getClaimAsDouble),
+    DOUBLE_PRIMITIVE("double", "ProjectedType.doubleValue(%1$s.getClaimAsDouble(%2$s))",
+            (principal, claimName) -> doubleValue(principal.getClaimAsDouble(claimName))),
+    BOOLEAN("java.lang.Boolean", "%1$s.getClaimAsBoolean(%2$s)", JWTPrincipal::getClaimAsBoolean),
+    BOOLEAN_PRIMITIVE("boolean", "ProjectedType.booleanValue(%1$s.getClaimAsBoolean(%2$s))",
+            (principal, claimName) -> booleanValue(principal.getClaimAsBoolean(claimName))),
+    STRING_LIST("java.util.List<java.lang.String>", "%1$s.getClaimAsStringList(%2$s)",
+            JWTPrincipal::getClaimAsStringList),
+    STRING_SET("java.util.Set<java.lang.String>", "ProjectedType.toSet(%1$s.getClaimAsStringList(%2$s))",
+            (principal, claimName) -> toSet(principal.getClaimAsStringList(claimName))),
+    OPTIONAL_STRING("java.util.Optional<java.lang.String>", "java.util.Optional.ofNullable(%1$s.getClaimAsString(%2$s))",
+            (principal, claimName) -> Optional.ofNullable(principal.getClaimAsString(claimName))),
+    OPTIONAL_LONG("java.util.Optional<java.lang.Long>", "java.util.Optional.ofNullable(%1$s.getClaimAsLong(%2$s))",
+            (principal, claimName) -> Optional.ofNullable(principal.getClaimAsLong(claimName))),
+    OPTIONAL_DOUBLE("java.util.Optional<java.lang.Double>", "java.util.Optional.ofNullable(%1$s.getClaimAsDouble(%2$s))",
+            (principal, claimName) -> Optional.ofNullable(principal.getClaimAsDouble(claimName))),
+    OPTIONAL_BOOLEAN("java.util.Optional<java.lang.Boolean>",
+            "java.util.Optional.ofNullable(%1$s.getClaimAsBoolean(%2$s))",
+            (principal, claimName) -> Optional.ofNullable(principal.getClaimAsBoolean(claimName)));
+
+    private static final ProjectedType[] TYPES = values();
+
+    private final String typeName;
+    private final String sourceTemplate;
+    private final BiFunction<JWTPrincipal, String, Object> reader;
+
+    ProjectedType(String typeName, String sourceTemplate, BiFunction<JWTPrincipal, String, Object> reader) {
+        this.typeName = typeName;
+        this.sourceTemplate = sourceTemplate;
+        this.reader = reader;
+    }
+
+    /**
+     * Resolves a type by its name, as returned by {@link java.lang.reflect.Type#getTypeName()} and by type mirrors.
+     *
+     * @param typeName type name, e.g. {@code java.util.Set<java.lang.String>}
+     * @return projected type or null if the type is not supported
+     */
+    public static ProjectedType of(String typeName) {
+        for (ProjectedType type : TYPES) {
+            if (type.typeName.equals(typeName)) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Reads the claim from the principal.
+     *
+     * @param principal principal
+     * @param claimName claim name
+     * @return claim value converted to this type
+     */
+    public Object read(JWTPrincipal principal, String claimName) {
+        return reader.apply(principal, claimName);
+    }
+
+    /**
+     * Returns the source of an expression reading the claim, as used in generated binders.
+     *
+     * @param principalExpression expression evaluating to the principal
+     * @param claimNameLiteral claim name as a string literal
+     * @return source expression
+     */
+    public String toSource(String principalExpression, String claimNameLiteral) {
+        return String.format(sourceTemplate, principalExpression, claimNameLiteral);
+    }
+
+    public static long longValue(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    public static Integer integerValue(Long value) {
+        return value != null ? value.intValue() : null;
+    }
+
+    public static int intValue(Long value) {
+        return value != null ? value.intValue() : 0;
+    }
+
+    public static double doubleValue(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    public static boolean booleanValue(Boolean value) {
+        return value != null && value;
+    }
+
+    public static Set<String> toSet(List<String> values) {
+        return values != null ? Collections.unmodifiableSet(new HashSet<>(values)) : null;
+    }
+}
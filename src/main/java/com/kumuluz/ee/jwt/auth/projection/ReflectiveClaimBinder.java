@@ -0,0 +1,252 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.projection;
+
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.eclipse.microprofile.jwt.Claim;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binder of projections without a generated binder. Members, claim names and types are resolved once, when the binder
+ * is compiled; binding only reads the claims and assigns them. Classes are bound to their fields, interfaces are
+ * implemented with a proxy returning the values read at binding.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+final class ReflectiveClaimBinder<T> implements ClaimBinder<T> {
+
+    private final Class<T> type;
+    private final Constructor<?> constructor;
+    private final Field[] fields;
+    private final Map<Method, Integer> methodIndexes;
+    private final String[] claimNames;
+    private final ProjectedType[] types;
+
+    private ReflectiveClaimBinder(Class<T> type, Constructor<?> constructor, Field[] fields,
+                                  Map<Method, Integer> methodIndexes, String[] claimNames, ProjectedType[] types) {
+        this.type = type;
+        this.constructor = constructor;
+        this.fields = fields;
+        this.methodIndexes = methodIndexes;
+        this.claimNames = claimNames;
+        this.types = types;
+    }
+
+    /**
+     * Compiles the binder of a projection type.
+     *
+     * @param type projection type
+     * @param <T> projection type
+     * @return binder
+     * @throws IllegalArgumentException if the type can't be bound
+     */
+    static <T> ReflectiveClaimBinder<T> compile(Class<T> type) {
+        return type.isInterface() ? compileInterface(type) : compileClass(type);
+    }
+
+    private static <T> ReflectiveClaimBinder<T> compileClass(Class<T> type) {
+        List<String> errors = new ArrayList<>();
+
+        Constructor<T> constructor = null;
+        if (Modifier.isAbstract(type.getModifiers())) {
+            errors.add("class must not be abstract");
+        } else if (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers())) {
+            errors.add("nested class must be static");
+        } else {
+            try {
+                constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                errors.add("class must have a constructor without parameters");
+            }
+        }
+
+        List<Field> fields = new ArrayList<>();
+        List<String> claimNames = new ArrayList<>();
+        List<ProjectedType> types = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+
+            if (Modifier.isFinal(modifiers)) {
+                errors.add("field " + field.getName() + " must not be final");
+                continue;
+            }
+
+            ProjectedType projectedType = ProjectedType.of(field.getGenericType().getTypeName());
+            if (projectedType == null) {
+                errors.add("field " + field.getName() + " has an unsupported type " +
+                        field.getGenericType().getTypeName());
+                continue;
+            }
+
+            try {
+                claimNames.add(ClaimBinders.getClaimName(field.getAnnotation(Claim.class), field.getName()));
+            } catch (IllegalArgumentException e) {
+                errors.add("field " + field.getName() + ": " + e.getMessage());
+                continue;
+            }
+
+            field.setAccessible(true);
+            fields.add(field);
+            types.add(projectedType);
+        }
+
+        checkErrors(type, errors);
+
+        return new ReflectiveClaimBinder<>(type, constructor, fields.toArray(new Field[0]), null,
+                claimNames.toArray(new String[0]), types.toArray(new ProjectedType[0]));
+    }
+
+    private static <T> ReflectiveClaimBinder<T> compileInterface(Class<T> type) {
+        List<String> errors = new ArrayList<>();
+
+        Constructor<?> constructor = null;
+        try {
+            constructor = Proxy.getProxyClass(type.getClassLoader(), type).getConstructor(InvocationHandler.class);
+            // proxies of non-public interfaces are not public
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException | IllegalArgumentException e) {
+            errors.add("interface can't be proxied: " + e.getMessage());
+        }
+
+        Map<Method, Integer> methodIndexes = new HashMap<>();
+        List<String> claimNames = new ArrayList<>();
+        List<ProjectedType> types = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+
+            if (method.isDefault()) {
+                errors.add("default method " + method.getName() + " is only supported by generated binders");
+                continue;
+            }
+
+            if (method.getParameterCount() > 0) {
+                errors.add("method " + method.getName() + " must not have parameters");
+                continue;
+            }
+
+            ProjectedType projectedType = ProjectedType.of(method.getGenericReturnType().getTypeName());
+            if (projectedType == null) {
+                errors.add("method " + method.getName() + " has an unsupported return type " +
+                        method.getGenericReturnType().getTypeName());
+                continue;
+            }
+
+            try {
+                claimNames.add(ClaimBinders.getClaimName(method.getAnnotation(Claim.class),
+                        ClaimBinders.getPropertyName(method.getName())));
+            } catch (IllegalArgumentException e) {
+                errors.add("method " + method.getName() + ": " + e.getMessage());
+                continue;
+            }
+
+            methodIndexes.put(method, types.size());
+            types.add(projectedType);
+        }
+
+        checkErrors(type, errors);
+
+        return new ReflectiveClaimBinder<>(type, constructor, null, methodIndexes,
+                claimNames.toArray(new String[0]), types.toArray(new ProjectedType[0]));
+    }
+
+    private static void checkErrors(Class<?> type, List<String> errors) {
+        if (!errors.isEmpty()) {
+            throw new IllegalArgumentException("Claims can't be projected to " + type.getName() + ": " +
+                    String.join("; ", errors) + ".");
+        }
+    }
+
+    @Override
+    public Class<T> getType() {
+        return type;
+    }
+
+    @Override
+    public T bind(JWTPrincipal principal) {
+        Object[] values = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            values[i] = types[i].read(principal, claimNames[i]);
+        }
+
+        try {
+            if (methodIndexes != null) {
+                return type.cast(constructor.newInstance(new ProjectionHandler(type, methodIndexes, values)));
+            }
+
+            T projection = type.cast(constructor.newInstance());
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].set(projection, values[i]);
+            }
+            return projection;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Claims couldn't be projected to " + type.getName() + ".", e);
+        }
+    }
+
+    private static class ProjectionHandler implements InvocationHandler {
+
+        private final Class<?> type;
+        private final Map<Method, Integer> methodIndexes;
+        private final Object[] values;
+
+        ProjectionHandler(Class<?> type, Map<Method, Integer> methodIndexes, Object[] values) {
+            this.type = type;
+            this.methodIndexes = methodIndexes;
+            this.values = values;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            Integer index = methodIndexes.get(method);
+            if (index != null) {
+                return values[index];
+            }
+
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+    }
+}
@@ -22,17 +22,42 @@ package com.kumuluz.ee.jwt.auth.validator;
 
 /**
  * Custom validation exception.
+ * <p>
+ * Rejected tokens are an expected outcome and not a programming error, so the exception doesn't capture a stack
+ * trace.
  *
  * @author Benjamin Kastelic
  * @since 1.0.0
  */
 public class JWTValidationException extends Exception {
 
+    private final RejectionReason reason;
+
     public JWTValidationException(String message) {
-        super(message);
+        this(message, (Throwable) null);
     }
 
     public JWTValidationException(String message, Throwable cause) {
-        super(message, cause);
+        super(message, cause, false, false);
+        this.reason = null;
+    }
+
+    public JWTValidationException(RejectionReason reason, Throwable cause) {
+        super(reason.getMessage(), cause, false, false);
+        this.reason = reason;
+    }
+
+    /**
+     * @return reason for the rejection or null if unknown
+     */
+    public RejectionReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return stage which rejected the token or null if unknown
+     */
+    public ValidationStage getStage() {
+        return reason != null ? reason.getStage() : null;
     }
 }
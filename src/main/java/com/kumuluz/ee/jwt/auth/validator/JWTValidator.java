@@ -22,80 +22,297 @@ package com.kumuluz.ee.jwt.auth.validator;
 
 import com.auth0.jwk.Jwk;
 import com.auth0.jwk.JwkException;
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
-import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.Claim;
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwk.SigningKeyNotFoundException;
 import com.auth0.jwt.interfaces.RSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.cache.RejectedTokenCache;
+import com.kumuluz.ee.jwt.auth.cache.TokenCache;
 import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
-import com.kumuluz.ee.jwt.auth.helper.ClaimHelper;
+import com.kumuluz.ee.jwt.auth.helper.KeyUnavailableException;
+import com.kumuluz.ee.jwt.auth.helper.ManagedRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.parser.ParsedJWT;
 import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
 import org.eclipse.microprofile.jwt.Claims;
 
 import java.security.interfaces.RSAPublicKey;
-import java.util.Map;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Validates the authorization token and creates a principal if authentication was successful.
+ * <p>
+ * Validation runs in {@link ValidationStage stages}: the token's shape, its header and its claims are checked before
+ * the key is resolved and the signature is verified, so expired tokens, tokens from other issuers and malformed tokens
+ * are rejected without a signature check or a JWKS fetch. Rejections are reported as a {@link ValidationResult} with a
+ * {@link RejectionReason} and counted per reason in {@link JWTContextInfo#getValidationMetrics()}.
+ * <p>
+ * Verified tokens can be cached in a {@link TokenCache} and rejected tokens in a {@link RejectedTokenCache}, so tokens
+ * which are sent repeatedly are validated only once.
+ * <p>
+ * Keys of remote key sets (JWKS) may have to be fetched before a token can be verified. {@link #validateIfKeyLoaded}
+ * never waits for such a fetch and {@link #validateAsync} moves validations which would wait for it to an executor.
  *
  * @author Benjamin Kastelic
  * @since 1.0.0
  */
 public class JWTValidator {
 
+    private static final String SUPPORTED_ALGORITHM = "RS256";
+    private static final int MAX_KEY_ID_LENGTH = 1024;
+
     public static JWTPrincipal validateToken(String token, JWTContextInfo jwtContextInfo) throws JWTValidationException {
+        return validate(token, jwtContextInfo).getPrincipalOrThrow();
+    }
+
+    /**
+     * Validates the token without throwing an exception if it is rejected.
+     *
+     * @param token          raw token
+     * @param jwtContextInfo configuration
+     * @return principal of the accepted token or the reason the token was rejected
+     */
+    public static ValidationResult validate(String token, JWTContextInfo jwtContextInfo) {
+        return validate(token, jwtContextInfo, true);
+    }
+
+    /**
+     * Validates the token on the calling thread without loading keys. The result is null only while the key set is not
+     * loaded yet (or stale) or while it is being fetched; the caller decides whether to wait for the keys, e.g. with
+     * {@link JWTContextInfo#refreshKeysInBackground()}. A token whose key id is missing from a loaded key set is
+     * rejected and a throttled fetch is started in the background, in case the key was published since.
+     *
+     * @param token          raw token
+     * @param jwtContextInfo configuration
+     * @return principal of the accepted token, the reason the token was rejected or null if the key set has to be
+     * loaded first
+     */
+    public static ValidationResult validateIfKeyLoaded(String token, JWTContextInfo jwtContextInfo) {
+        return validate(token, jwtContextInfo, false);
+    }
+
+    /**
+     * Validates the token without blocking the calling thread. The token is validated on the calling thread if its key
+     * is already loaded (see {@link #validateIfKeyLoaded}), otherwise it is validated on the executor, which loads the
+     * key first, and the returned stage completes once the key is loaded. Callers which can't wait for the stage, e.g.
+     * request filters, should use {@link #validateIfKeyLoaded} instead, so no validation is started whose result is
+     * discarded. If the executor rejects the validation, e.g. because too many tokens are waiting for keys, the token
+     * is rejected with {@link RejectionReason#KEY_UNAVAILABLE}.
+     *
+     * @param token          raw token
+     * @param jwtContextInfo configuration
+     * @param executor       executor for tokens whose key has to be loaded
+     * @return stage completed with the principal of the accepted token or the reason the token was rejected
+     */
+    public static CompletionStage<ValidationResult> validateAsync(String token, JWTContextInfo jwtContextInfo,
+                                                                  Executor executor) {
+        ValidationResult result = validateIfKeyLoaded(token, jwtContextInfo);
+        if (result != null) {
+            return CompletableFuture.completedFuture(result);
+        }
 
-        DecodedJWT jwt;
         try {
-            jwt = JWT.decode(token);
-        } catch (JWTVerificationException e) {
-            throw new JWTValidationException("Failed to validate token.", e);
+            return CompletableFuture.supplyAsync(() -> validate(token, jwtContextInfo, true), executor);
+        } catch (RejectedExecutionException e) {
+            jwtContextInfo.getValidationMetrics().rejected(RejectionReason.KEY_UNAVAILABLE);
+            return CompletableFuture.completedFuture(ValidationResult.rejected(RejectionReason.KEY_UNAVAILABLE));
+        }
+    }
+
+    /**
+     * @param mayBlock whether keys may be loaded on the calling thread
+     * @return validation result or null if the key set has to be loaded and {@code mayBlock} is false
+     */
+    private static ValidationResult validate(String token, JWTContextInfo jwtContextInfo, boolean mayBlock) {
+
+        TokenCache tokenCache = jwtContextInfo.getTokenCache();
+        if (tokenCache != null) {
+            JWTPrincipal cachedPrincipal = tokenCache.get(token);
+            if (cachedPrincipal != null) {
+                return ValidationResult.accepted(cachedPrincipal);
+            }
+        }
+
+        // oversized tokens are rejected by their length, which is cheaper than a lookup
+        RejectedTokenCache rejectedTokenCache = token.length() <= jwtContextInfo.getMaxTokenSize() ?
+                jwtContextInfo.getRejectedTokenCache() : null;
+        if (rejectedTokenCache != null) {
+            ValidationResult rejection = rejectedTokenCache.get(token);
+            if (rejection != null) {
+                return rejection;
+            }
+        }
+
+        ValidationResult result = verify(token, jwtContextInfo, mayBlock);
+
+        if (result == null) {
+            return null;
+        } else if (result.isAccepted()) {
+            jwtContextInfo.getValidationMetrics().accepted();
+        } else {
+            jwtContextInfo.getValidationMetrics().rejected(result.getReason());
+            if (rejectedTokenCache != null && result.getReason().isCacheable()) {
+                rejectedTokenCache.put(token, result);
+            }
+        }
+
+        return result;
+    }
+
+    private static ValidationResult verify(String token, JWTContextInfo jwtContextInfo, boolean mayBlock) {
+
+        // shape
+        if (token.length() > jwtContextInfo.getMaxTokenSize()) {
+            return ValidationResult.rejected(RejectionReason.TOO_LARGE);
+        }
+
+        ParsedJWT jwt = ParsedJWT.tryParse(token);
+        if (jwt == null) {
+            return ValidationResult.rejected(RejectionReason.MALFORMED);
+        }
+
+        // header
+        RejectionReason reason = validateHeader(jwt);
+        if (reason != null) {
+            return ValidationResult.rejected(reason);
+        }
+
+        // claims
+        reason = validateClaims(jwt, jwtContextInfo);
+        if (reason != null) {
+            return ValidationResult.rejected(reason);
         }
 
-        Algorithm algorithm;
+        // key
+        RSAPublicKey publicKey;
+        String keyId;
         RSAKeyProvider keyProvider = jwtContextInfo.getRsaKeyProvider();
-        if (keyProvider != null) {
-            algorithm = Algorithm.RSA256(keyProvider);
+        if (keyProvider == null && jwtContextInfo.getJwkProvider() instanceof RSAKeyProvider) {
+            keyProvider = (RSAKeyProvider) jwtContextInfo.getJwkProvider();
+        }
+
+        if (keyProvider instanceof ManagedRSAKeyProvider && !mayBlock) {
+            ManagedRSAKeyProvider managedKeyProvider = (ManagedRSAKeyProvider) keyProvider;
+            keyId = jwt.getKeyId();
+            publicKey = managedKeyProvider.getLoadedPublicKeyById(keyId);
+            if (publicKey == null && (!managedKeyProvider.isReady() || managedKeyProvider.isLoading())) {
+                return null;
+            } else if (publicKey == null) {
+                // the key set is loaded, so the key id is unknown; it may have been published since the last fetch
+                managedKeyProvider.refreshInBackground();
+                return ValidationResult.rejected(RejectionReason.UNKNOWN_KEY_ID);
+            }
+        } else if (keyProvider != null) {
+            keyId = jwt.getKeyId();
+            try {
+                publicKey = keyProvider.getPublicKeyById(keyId);
+            } catch (KeyUnavailableException e) {
+                return ValidationResult.rejected(RejectionReason.KEY_UNAVAILABLE, e);
+            } catch (IllegalArgumentException e) {
+                return ValidationResult.rejected(RejectionReason.UNKNOWN_KEY_ID, e);
+            }
         } else if (jwtContextInfo.getJwkProvider() != null) {
-            Jwk jwk;
+            keyId = jwt.getKeyId();
             try {
-                jwk = jwtContextInfo.getJwkProvider().get(jwt.getKeyId());
-                algorithm = Algorithm.RSA256((RSAPublicKey) jwk.getPublicKey(), null);
+                Jwk jwk = jwtContextInfo.getJwkProvider().get(keyId);
+                publicKey = (RSAPublicKey) jwk.getPublicKey();
+            } catch (SigningKeyNotFoundException e) {
+                return ValidationResult.rejected(RejectionReason.UNKNOWN_KEY_ID, e);
             } catch (JwkException e) {
-                throw new JWTValidationException("Failed to load jwks.", e);
+                return ValidationResult.rejected(RejectionReason.KEY_UNAVAILABLE, e);
             }
         } else {
-            final RSAPublicKey decodedPublicKey = jwtContextInfo.getDecodedPublicKey();
-            if (decodedPublicKey != null) {
-                algorithm = Algorithm.RSA256(decodedPublicKey, null);
-            } else {
+            keyId = JWTVerifierRegistry.STATIC_KEY_ID;
+            publicKey = jwtContextInfo.getDecodedPublicKey();
+            if (publicKey == null) {
                 throw new IllegalStateException("Neither kumuluzee.jwt-auth.jwks-uri nor kumuluzee.jwt-auth.public-key were configured.");
             }
         }
 
-        JWTVerifier verifier = JWT.require(algorithm)
-                .withIssuer(jwtContextInfo.getIssuer())
-                .acceptLeeway(jwtContextInfo.getMaximumLeeway())
-                .build();
+        if (publicKey == null) {
+            return ValidationResult.rejected(RejectionReason.UNKNOWN_KEY_ID);
+        }
 
-        try {
-            verifier.verify(jwt);
-        } catch (JWTVerificationException e) {
-            throw new JWTValidationException("Failed to validate token.", e);
+        // signature
+        if (!jwtContextInfo.getVerifierRegistry().getVerifier(keyId, publicKey).verify(jwt)) {
+            return ValidationResult.rejected(RejectionReason.BAD_SIGNATURE);
         }
 
-        String name = ClaimHelper.getClaim(Claims.upn.name(), jwt.getClaims()).asString();
+        String name = jwt.getClaim(Claims.upn.name()).asString();
         if (name == null) {
-            name = ClaimHelper.getClaim(Claims.preferred_username.name(), jwt.getClaims()).asString();
+            name = jwt.getClaim(Claims.preferred_username.name()).asString();
             if (name == null) {
                 name = jwt.getSubject();
             }
         }
 
-        Map<String, Claim> claims = jwt.getClaims();
+        // the claims parsed above are stored by the principal as they are
+        JWTPrincipal principal = new JWTPrincipal(name, token, jwt.getClaims(), jwtContextInfo.getGroupsClaimPath());
+
+        TokenCache tokenCache = jwtContextInfo.getTokenCache();
+        if (tokenCache != null && jwt.getExpiresAt() != null) {
+            tokenCache.put(token, principal, jwt.getExpiresAt().getTime() + jwtContextInfo.getMaximumLeeway() * 1000L);
+        }
+
+        return ValidationResult.accepted(principal);
+    }
+
+    private static RejectionReason validateHeader(ParsedJWT jwt) {
+        if (!SUPPORTED_ALGORITHM.equals(jwt.getAlgorithm())) {
+            return RejectionReason.UNSUPPORTED_ALGORITHM;
+        }
+
+        // the key id is passed on to the key provider, which may fetch keys for unknown ids
+        if (!jwt.getHeaderClaim("kid").isNull() &&
+                (jwt.getKeyId() == null || jwt.getKeyId().isEmpty() || jwt.getKeyId().length() > MAX_KEY_ID_LENGTH)) {
+            return RejectionReason.INVALID_KEY_ID;
+        }
+
+        // no extensions are supported, so critical ones can't be honoured (RFC 7515, section 4.1.11)
+        if (!jwt.getHeaderClaim("crit").isNull()) {
+            return RejectionReason.UNSUPPORTED_CRITICAL_HEADER;
+        }
+
+        return null;
+    }
+
+    private static RejectionReason validateClaims(ParsedJWT jwt, JWTContextInfo jwtContextInfo) {
+        // second precision, like the time claims
+        long now = System.currentTimeMillis() / 1000 * 1000;
+        long leeway = jwtContextInfo.getMaximumLeeway() * 1000L;
+
+        Date expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null && now - leeway > expiresAt.getTime()) {
+            return RejectionReason.EXPIRED;
+        }
+
+        Date notBefore = jwt.getNotBefore();
+        if (notBefore != null && now + leeway < notBefore.getTime()) {
+            return RejectionReason.NOT_YET_VALID;
+        }
+
+        Date issuedAt = jwt.getIssuedAt();
+        if (issuedAt != null && now + leeway < issuedAt.getTime()) {
+            return RejectionReason.ISSUED_IN_FUTURE;
+        }
+
+        String issuer = jwtContextInfo.getIssuer();
+        if (issuer != null && !issuer.equals(jwt.getIssuer())) {
+            return RejectionReason.WRONG_ISSUER;
+        }
+
+        Set<String> audiences = jwtContextInfo.getAudiences();
+        if (audiences != null && !audiences.isEmpty()) {
+            List<String> tokenAudience = jwt.getAudience();
+            if (tokenAudience == null || Collections.disjoint(audiences, tokenAudience)) {
+                return RejectionReason.WRONG_AUDIENCE;
+            }
+        }
 
-        return new JWTPrincipal(name, token, claims);
+        return null;
     }
 }
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.validator;
+
+import java.security.interfaces.RSAPublicKey;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps one {@link SignatureVerifier} per verification key, so the signature verification is initialized once per key
+ * instead of once per request. Verifiers can be shared between concurrent requests. An entry is rebuilt when a
+ * different key is supplied for the same key id. When a reloaded key set removes or replaces keys, their entries are
+ * dropped with {@link #retain(Map)}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JWTVerifierRegistry {
+
+    public static final String STATIC_KEY_ID = "static-key";
+
+    private static final String MISSING_KEY_ID = "";
+
+    private final ConcurrentMap<String, SignatureVerifier> verifiers = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the verifier for the given key, building it if the key id was not seen before or its key has changed.
+     *
+     * @param keyId     key id, {@link #STATIC_KEY_ID} for the statically configured key or {@code null}
+     * @param publicKey key the verifier must use
+     * @return verifier for the key
+     */
+    public SignatureVerifier getVerifier(String keyId, RSAPublicKey publicKey) {
+        String registryKey = keyId == null ? MISSING_KEY_ID : keyId;
+
+        SignatureVerifier verifier = verifiers.get(registryKey);
+        // a key decoded again after a reload is equal, but not the same instance
+        if (verifier != null && (verifier.getPublicKey() == publicKey || verifier.getPublicKey().equals(publicKey))) {
+            return verifier;
+        }
+
+        verifier = new SignatureVerifier(publicKey);
+        verifiers.put(registryKey, verifier);
+
+        return verifier;
+    }
+
+    /**
+     * Drops the verifiers of keys which are no longer loaded or were replaced. The verifier of the statically
+     * configured key is kept.
+     *
+     * @param publicKeys currently loaded keys by key id
+     */
+    public void retain(Map<String, RSAPublicKey> publicKeys) {
+        verifiers.entrySet().removeIf(entry -> !STATIC_KEY_ID.equals(entry.getKey()) &&
+                !entry.getValue().getPublicKey().equals(publicKeys.get(entry.getKey())));
+    }
+
+    public void invalidate() {
+        verifiers.clear();
+    }
+
+    public int size() {
+        return verifiers.size();
+    }
+}
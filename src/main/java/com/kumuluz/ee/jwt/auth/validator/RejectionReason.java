@@ -0,0 +1,124 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.validator;
+
+/**
+ * Reasons for rejecting a token, each reported by a single {@link ValidationStage}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public enum RejectionReason {
+
+    /**
+     * Token exceeds the maximum size.
+     */
+    TOO_LARGE(ValidationStage.SHAPE, "Token exceeds the maximum size.", true),
+
+    /**
+     * Token is not a JWT or its header or payload can't be decoded.
+     */
+    MALFORMED(ValidationStage.SHAPE, "Token is malformed.", true),
+
+    /**
+     * Token is not signed with a supported algorithm.
+     */
+    UNSUPPORTED_ALGORITHM(ValidationStage.HEADER, "Token is signed with an unsupported algorithm.", true),
+
+    /**
+     * Key id of the token is not a non-empty string of a reasonable length.
+     */
+    INVALID_KEY_ID(ValidationStage.HEADER, "Token has an invalid key id.", true),
+
+    /**
+     * Token requires header parameters which are not supported.
+     */
+    UNSUPPORTED_CRITICAL_HEADER(ValidationStage.HEADER, "Token has unsupported critical header parameters.", true),
+
+    /**
+     * Token has expired.
+     */
+    EXPIRED(ValidationStage.CLAIMS, "Token has expired.", true),
+
+    /**
+     * Token can't be used yet. It may become valid, so the rejection is not cached.
+     */
+    NOT_YET_VALID(ValidationStage.CLAIMS, "Token can't be used yet.", false),
+
+    /**
+     * Token was issued in the future. It may become valid, so the rejection is not cached.
+     */
+    ISSUED_IN_FUTURE(ValidationStage.CLAIMS, "Token was issued in the future.", false),
+
+    /**
+     * Token was issued by an unexpected issuer.
+     */
+    WRONG_ISSUER(ValidationStage.CLAIMS, "Token was issued by an unexpected issuer.", true),
+
+    /**
+     * Token is not intended for any of the accepted audiences.
+     */
+    WRONG_AUDIENCE(ValidationStage.CLAIMS, "Token is not intended for this audience.", true),
+
+    /**
+     * No key is known for the key id of the token. The key may be published later, so the rejection is not cached.
+     */
+    UNKNOWN_KEY_ID(ValidationStage.KEY, "No public key found for the token's key id.", false),
+
+    /**
+     * Keys couldn't be loaded, e.g. because the JWKS couldn't be fetched. This is not the token's fault, so the
+     * rejection is not cached.
+     */
+    KEY_UNAVAILABLE(ValidationStage.KEY, "Failed to load jwks.", false),
+
+    /**
+     * Signature doesn't match the token.
+     */
+    BAD_SIGNATURE(ValidationStage.SIGNATURE, "Token signature is invalid.", true);
+
+    private final ValidationStage stage;
+    private final String message;
+    private final boolean cacheable;
+
+    RejectionReason(ValidationStage stage, String message, boolean cacheable) {
+        this.stage = stage;
+        this.message = message;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * @return stage which reports the reason
+     */
+    public ValidationStage getStage() {
+        return stage;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return true if every later validation of the same token would be rejected for the same reason
+     */
+    public boolean isCacheable() {
+        return cacheable;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.validator;
+
+import com.kumuluz.ee.jwt.auth.parser.ParsedJWT;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * Verifies RS256 signatures with one public key. An invalid signature is reported by returning false instead of an
+ * exception, so verifying forged tokens is not more expensive than verifying valid ones. A {@link Signature} is not
+ * thread safe, so each thread initializes its own instance for the key once and reuses it.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class SignatureVerifier {
+
+    private static final String ALGORITHM = "SHA256withRSA";
+
+    private final RSAPublicKey publicKey;
+    private final int signatureLength;
+    private final ThreadLocal<Signature> signatures;
+
+    public SignatureVerifier(RSAPublicKey publicKey) {
+        this.publicKey = publicKey;
+        this.signatureLength = (publicKey.getModulus().bitLength() + 7) / 8;
+        this.signatures = ThreadLocal.withInitial(this::createSignature);
+    }
+
+    /**
+     * Verifies the signature over the encoded header and payload of the token.
+     *
+     * @param jwt parsed token
+     * @return true if the signature is valid
+     */
+    public boolean verify(ParsedJWT jwt) {
+        byte[] signatureBytes = ParsedJWT.decodeBase64Url(jwt.getSignature());
+        if (signatureBytes == null || signatureBytes.length != signatureLength) {
+            return false;
+        }
+
+        Signature signature = signatures.get();
+        try {
+            signature.update(jwt.getHeader().getBytes(StandardCharsets.US_ASCII));
+            signature.update((byte) '.');
+            signature.update(jwt.getPayload().getBytes(StandardCharsets.US_ASCII));
+            return signature.verify(signatureBytes);
+        } catch (SignatureException e) {
+            // the instance may be left with partial input
+            signatures.remove();
+            return false;
+        }
+    }
+
+    public RSAPublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    private Signature createSignature() {
+        try {
+            Signature signature = Signature.getInstance(ALGORITHM);
+            signature.initVerify(publicKey);
+            return signature;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialize " + ALGORITHM + " signature verification.", e);
+        }
+    }
+}
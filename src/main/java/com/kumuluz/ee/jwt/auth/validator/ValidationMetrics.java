@@ -0,0 +1,98 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.validator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts validated tokens and rejected tokens per {@link RejectionReason} and {@link ValidationStage}.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ValidationMetrics {
+
+    private static final RejectionReason[] REASONS = RejectionReason.values();
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder[] rejected = new LongAdder[REASONS.length];
+
+    public ValidationMetrics() {
+        for (int i = 0; i < rejected.length; i++) {
+            rejected[i] = new LongAdder();
+        }
+    }
+
+    public void accepted() {
+        accepted.increment();
+    }
+
+    public void rejected(RejectionReason reason) {
+        rejected[reason.ordinal()].increment();
+    }
+
+    /**
+     * @return number of tokens which passed all stages
+     */
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    /**
+     * @param reason rejection reason
+     * @return number of tokens rejected for the reason
+     */
+    public long getRejectedCount(RejectionReason reason) {
+        return rejected[reason.ordinal()].sum();
+    }
+
+    /**
+     * @param stage validation stage
+     * @return number of tokens rejected by the stage
+     */
+    public long getRejectedCount(ValidationStage stage) {
+        long count = 0;
+        for (RejectionReason reason : REASONS) {
+            if (reason.getStage() == stage) {
+                count += rejected[reason.ordinal()].sum();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of tokens rejected by any stage
+     */
+    public long getRejectedCount() {
+        long count = 0;
+        for (LongAdder reasonCount : rejected) {
+            count += reasonCount.sum();
+        }
+        return count;
+    }
+
+    public void reset() {
+        accepted.reset();
+        for (LongAdder reasonCount : rejected) {
+            reasonCount.reset();
+        }
+    }
+}
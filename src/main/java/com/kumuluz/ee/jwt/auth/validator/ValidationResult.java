@@ -0,0 +1,111 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.validator;
+
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+
+/**
+ * Outcome of a token validation: either the principal of an accepted token or the reason a token was rejected.
+ * <p>
+ * Rejections are reported without capturing a stack trace. Rejections without a cause are shared instances, so
+ * rejecting a token allocates nothing beyond the validation itself.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public final class ValidationResult {
+
+    private static final ValidationResult[] REJECTIONS = new ValidationResult[RejectionReason.values().length];
+
+    static {
+        for (RejectionReason reason : RejectionReason.values()) {
+            REJECTIONS[reason.ordinal()] = new ValidationResult(null, reason, null);
+        }
+    }
+
+    private final JWTPrincipal principal;
+    private final RejectionReason reason;
+    private final Throwable cause;
+
+    private ValidationResult(JWTPrincipal principal, RejectionReason reason, Throwable cause) {
+        this.principal = principal;
+        this.reason = reason;
+        this.cause = cause;
+    }
+
+    public static ValidationResult accepted(JWTPrincipal principal) {
+        return new ValidationResult(principal, null, null);
+    }
+
+    public static ValidationResult rejected(RejectionReason reason) {
+        return REJECTIONS[reason.ordinal()];
+    }
+
+    /**
+     * @param reason reason for the rejection
+     * @param cause  exception which caused the rejection, e.g. a decoding error
+     * @return rejected result
+     */
+    public static ValidationResult rejected(RejectionReason reason, Throwable cause) {
+        return cause == null ? rejected(reason) : new ValidationResult(null, reason, cause);
+    }
+
+    public boolean isAccepted() {
+        return reason == null;
+    }
+
+    /**
+     * @return principal of the accepted token or null if the token was rejected
+     */
+    public JWTPrincipal getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * @return reason for the rejection or null if the token was accepted
+     */
+    public RejectionReason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return exception which caused the rejection or null
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * @return principal of the accepted token
+     * @throws JWTValidationException if the token was rejected
+     */
+    public JWTPrincipal getPrincipalOrThrow() throws JWTValidationException {
+        if (reason != null) {
+            throw new JWTValidationException(reason, cause);
+        }
+        return principal;
+    }
+
+    @Override
+    public String toString() {
+        return reason == null ? "accepted" : reason.name() + ": " + reason.getMessage();
+    }
+}
@@ -20,12 +20,17 @@
  */
 package com.kumuluz.ee.jwt.auth;
 
+import com.kumuluz.ee.jwt.auth.cache.TokenCache;
+import com.kumuluz.ee.jwt.auth.cdi.ClaimExtension;
 import com.kumuluz.ee.jwt.auth.cdi.ClaimProducer;
 import com.kumuluz.ee.jwt.auth.context.JWTSecurityContext;
 import com.kumuluz.ee.jwt.auth.feature.JWTRolesAllowedDynamicFeature;
 import com.kumuluz.ee.jwt.auth.filter.JWTAuthorizationFilter;
+import com.kumuluz.ee.jwt.auth.health.JwksReadinessCheck;
 import com.kumuluz.ee.jwt.auth.helper.ClaimHelper;
+import com.kumuluz.ee.jwt.auth.parser.ParsedJWT;
 import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import com.kumuluz.ee.jwt.auth.projection.ClaimProjection;
 import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
 import org.jboss.arquillian.container.test.spi.client.deployment.CachedAuxilliaryArchiveAppender;
 import org.jboss.shrinkwrap.api.Archive;
@@ -51,8 +56,13 @@ public class JwtAuthLibraryAppender extends CachedAuxilliaryArchiveAppender {
                 .addPackages(true, JWTRolesAllowedDynamicFeature.class.getPackage())
                 .addPackages(true, JWTSecurityContext.class.getPackage())
                 .addPackages(true, ClaimProducer.class.getPackage())
+                .addPackages(true, TokenCache.class.getPackage())
+                .addPackages(true, ClaimProjection.class.getPackage())
+                .addPackages(true, ParsedJWT.class.getPackage())
+                .addPackages(true, JwksReadinessCheck.class.getPackage())
                 .addClass(JWTAuthExtension.class)
                 .addAsServiceProvider(com.kumuluz.ee.common.Extension.class, JWTAuthExtension.class)
+                .addAsServiceProvider(javax.enterprise.inject.spi.Extension.class, ClaimExtension.class)
                 .addAsResource("META-INF/beans.xml");
     }
 }
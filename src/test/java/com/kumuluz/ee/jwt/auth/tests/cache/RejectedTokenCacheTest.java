@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.cache;
+
+import com.kumuluz.ee.jwt.auth.cache.RejectedTokenCache;
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.validator.RejectionReason;
+import com.kumuluz.ee.jwt.auth.validator.ValidationResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tests the rejected token cache.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class RejectedTokenCacheTest {
+
+    @Test(groups = "cache")
+    public void testThatRejectionIsReturned() {
+        RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(10, 1, TimeUnit.MINUTES);
+        ValidationResult rejection = rejection();
+
+        Assert.assertNull(rejectedTokenCache.get("token"));
+        rejectedTokenCache.put("token", rejection);
+
+        Assert.assertSame(rejectedTokenCache.get("token"), rejection);
+        Assert.assertNull(rejectedTokenCache.get("other"));
+        Assert.assertEquals(rejectedTokenCache.getHitCount(), 1);
+        Assert.assertEquals(rejectedTokenCache.getMissCount(), 2);
+        Assert.assertEquals(rejectedTokenCache.getHitRate(), 1.0 / 3);
+    }
+
+    @Test(groups = "cache")
+    public void testThatRejectionExpires() throws InterruptedException {
+        RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(10, 50, TimeUnit.MILLISECONDS);
+
+        rejectedTokenCache.put("token", rejection());
+        Thread.sleep(100);
+
+        Assert.assertNull(rejectedTokenCache.get("token"));
+        Assert.assertEquals(rejectedTokenCache.size(), 0);
+    }
+
+    @Test(groups = "cache")
+    public void testThatOldestRejectionIsEvicted() {
+        RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(2, 1, TimeUnit.MINUTES);
+
+        rejectedTokenCache.put("first", rejection());
+        rejectedTokenCache.put("second", rejection());
+        rejectedTokenCache.get("first");
+        rejectedTokenCache.put("third", rejection());
+
+        Assert.assertNull(rejectedTokenCache.get("first"));
+        Assert.assertNotNull(rejectedTokenCache.get("second"));
+        Assert.assertNotNull(rejectedTokenCache.get("third"));
+        Assert.assertEquals(rejectedTokenCache.size(), 2);
+    }
+
+    @Test(groups = "cache")
+    public void testThatHitRateIsZeroWithoutLookups() {
+        Assert.assertEquals(new RejectedTokenCache(10, 1, TimeUnit.MINUTES).getHitRate(), 0.0);
+    }
+
+    @Test(groups = "cache", expectedExceptions = IllegalArgumentException.class)
+    public void testThatSizeMustBePositive() {
+        new RejectedTokenCache(0, 1, TimeUnit.MINUTES);
+    }
+
+    @Test(groups = "cache")
+    public void testThatSettingsChangeClearsCache() {
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setIssuer("http://example.org"));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setAudiences(Collections.singleton("customers-api")));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setMaximumLeeway(0));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setDecodedPublicKey(null));
+        assertClearedBy(jwtContextInfo -> {
+            jwtContextInfo.setJwksUri("http://localhost:8093/jwks");
+            jwtContextInfo.initJwks();
+        });
+    }
+
+    private static void assertClearedBy(Consumer<JWTContextInfo> settingsChange) {
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(10, 1, TimeUnit.MINUTES);
+        jwtContextInfo.setRejectedTokenCache(rejectedTokenCache);
+        rejectedTokenCache.put("token", ValidationResult.rejected(RejectionReason.WRONG_ISSUER));
+
+        settingsChange.accept(jwtContextInfo);
+
+        Assert.assertNull(rejectedTokenCache.get("token"));
+    }
+
+    private static ValidationResult rejection() {
+        return ValidationResult.rejected(RejectionReason.EXPIRED);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.cache;
+
+import com.kumuluz.ee.jwt.auth.cache.EvictionPolicy;
+import com.kumuluz.ee.jwt.auth.cache.TokenCache;
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.principal.ClaimPath;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Tests the verified token cache.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class TokenCacheTest {
+
+    @Test(groups = "cache")
+    public void testThatCachedPrincipalIsReturned() {
+        TokenCache tokenCache = new TokenCache(10, EvictionPolicy.LRU);
+        JWTPrincipal principal = principal("token");
+
+        Assert.assertNull(tokenCache.get("token"));
+        tokenCache.put("token", principal, System.currentTimeMillis() + 60000);
+
+        Assert.assertSame(tokenCache.get("token"), principal);
+        Assert.assertEquals(tokenCache.getHitCount(), 1);
+        Assert.assertEquals(tokenCache.getMissCount(), 1);
+    }
+
+    @Test(groups = "cache")
+    public void testThatExpiredTokenIsNotReturned() throws InterruptedException {
+        TokenCache tokenCache = new TokenCache(10, EvictionPolicy.LRU);
+
+        tokenCache.put("expired", principal("expired"), System.currentTimeMillis() - 1);
+        tokenCache.put("expiring", principal("expiring"), System.currentTimeMillis() + 50);
+        Thread.sleep(100);
+
+        Assert.assertNull(tokenCache.get("expired"));
+        Assert.assertNull(tokenCache.get("expiring"));
+        Assert.assertEquals(tokenCache.size(), 0);
+    }
+
+    @Test(groups = "cache")
+    public void testLruEviction() {
+        TokenCache tokenCache = new TokenCache(2, EvictionPolicy.LRU);
+        long expiresAt = System.currentTimeMillis() + 60000;
+
+        tokenCache.put("first", principal("first"), expiresAt);
+        tokenCache.put("second", principal("second"), expiresAt);
+        tokenCache.get("first");
+        tokenCache.put("third", principal("third"), expiresAt);
+
+        Assert.assertNotNull(tokenCache.get("first"));
+        Assert.assertNull(tokenCache.get("second"));
+        Assert.assertNotNull(tokenCache.get("third"));
+    }
+
+    @Test(groups = "cache")
+    public void testFifoEviction() {
+        TokenCache tokenCache = new TokenCache(2, EvictionPolicy.FIFO);
+        long expiresAt = System.currentTimeMillis() + 60000;
+
+        tokenCache.put("first", principal("first"), expiresAt);
+        tokenCache.put("second", principal("second"), expiresAt);
+        tokenCache.get("first");
+        tokenCache.put("third", principal("third"), expiresAt);
+
+        Assert.assertNull(tokenCache.get("first"));
+        Assert.assertNotNull(tokenCache.get("second"));
+        Assert.assertNotNull(tokenCache.get("third"));
+    }
+
+    @Test(groups = "cache")
+    public void testThatSettingsChangeClearsCache() {
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setIssuer("http://example.org"));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setAudiences(Collections.singleton("customers-api")));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setMaximumLeeway(0));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setGroupsClaimPath(ClaimPath.compile("realm_access/roles")));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setDecodedPublicKey(null));
+        assertClearedBy(jwtContextInfo -> jwtContextInfo.setMaxTokenSize(1024));
+        assertClearedBy(jwtContextInfo -> {
+            jwtContextInfo.setJwksUri("http://localhost:8093/jwks");
+            jwtContextInfo.initJwks();
+        });
+    }
+
+    private static void assertClearedBy(Consumer<JWTContextInfo> settingsChange) {
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        TokenCache tokenCache = new TokenCache(10, EvictionPolicy.LRU);
+        jwtContextInfo.setTokenCache(tokenCache);
+        tokenCache.put("token", principal("token"), System.currentTimeMillis() + 60000);
+
+        settingsChange.accept(jwtContextInfo);
+
+        Assert.assertNull(tokenCache.get("token"));
+    }
+
+    private static JWTPrincipal principal(String token) {
+        return new JWTPrincipal("tester", token, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.cdi;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.kumuluz.ee.jwt.auth.cdi.ClaimDescriptor;
+import com.kumuluz.ee.jwt.auth.cdi.ClaimExtension;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import com.kumuluz.ee.jwt.auth.projection.ClaimProjection;
+import org.eclipse.microprofile.jwt.Claim;
+import org.eclipse.microprofile.jwt.ClaimValue;
+import org.eclipse.microprofile.jwt.Claims;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.spi.DeploymentException;
+import javax.enterprise.inject.spi.InjectionPoint;
+import javax.inject.Provider;
+import javax.json.JsonArray;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Tests resolution and validation of @Claim injection points.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ClaimDescriptorTest {
+
+    @ClaimProjection
+    static class CustomerClaims {
+        @Claim("customer-id")
+        String customerId;
+    }
+
+    static class RequestBean {
+        CustomerClaims customer;
+
+        @Claim("customer-id")
+        String customerId;
+
+        @Claim(standard = Claims.sub)
+        String subject;
+
+        @Claim
+        String missing;
+
+        @Claim(value = "sub", standard = Claims.sub)
+        String ambiguous;
+
+        @Claim("/realm_access/roles")
+        JsonArray roles;
+
+        @Claim("/realm_access//roles")
+        JsonArray invalidPath;
+    }
+
+    @ApplicationScoped
+    static class AppBean {
+        @Claim("customer-id")
+        String customerId;
+
+        @Claim("customer-id")
+        ClaimValue<String> customerIdValue;
+
+        CustomerClaims customer;
+
+        Provider<CustomerClaims> customerProvider;
+    }
+
+    @Test(groups = "cdi-extension")
+    public void testThatClaimNamesAreResolved() throws Exception {
+        Assert.assertEquals(ClaimDescriptor.of(injectionPoint(RequestBean.class, "customerId")).getClaimName(), "customer-id");
+        Assert.assertEquals(ClaimDescriptor.of(injectionPoint(RequestBean.class, "subject")).getClaimName(), "sub");
+        Assert.assertNull(ClaimDescriptor.of(injectionPoint(RequestBean.class, "subject")).getError());
+    }
+
+    @Test(groups = "cdi-extension")
+    public void testThatClaimPathsAreCompiled() throws Exception {
+        ClaimDescriptor descriptor = ClaimDescriptor.of(injectionPoint(RequestBean.class, "roles"));
+        Assert.assertNotNull(descriptor.getClaimPath());
+        Assert.assertNull(ClaimDescriptor.of(injectionPoint(RequestBean.class, "customerId")).getClaimPath());
+
+        Map<String, Object> realmAccess = Collections.singletonMap("roles", Arrays.asList("admin", "user"));
+        String token = JWT.create().withClaim("realm_access", realmAccess).sign(Algorithm.HMAC256("secret"));
+        JWTPrincipal principal = new JWTPrincipal("jdoe", token, JWT.decode(token).getClaims());
+
+        JsonArray roles = (JsonArray) descriptor.getClaim(principal);
+        Assert.assertEquals(roles.getString(0), "admin");
+        Assert.assertEquals(roles.getString(1), "user");
+        Assert.assertNull(descriptor.getClaim(null));
+    }
+
+    @Test(groups = "cdi-extension")
+    public void testThatMisconfiguredInjectionPointsAreDeploymentErrors() throws Exception {
+        Assert.assertTrue(ClaimDescriptor.of(injectionPoint(RequestBean.class, "invalidPath")).isDeploymentError());
+        Assert.assertTrue(ClaimDescriptor.of(injectionPoint(RequestBean.class, "missing")).isDeploymentError());
+        Assert.assertTrue(ClaimDescriptor.of(injectionPoint(RequestBean.class, "ambiguous")).isDeploymentError());
+        Assert.assertTrue(ClaimDescriptor.of(injectionPoint(AppBean.class, "customerId")).isDeploymentError());
+    }
+
+    @Test(groups = "cdi-extension", expectedExceptions = DeploymentException.class)
+    public void testThatWrappedClaimsInApplicationScopeFailOnUse() throws Exception {
+        ClaimDescriptor descriptor = ClaimDescriptor.of(injectionPoint(AppBean.class, "customerIdValue"));
+
+        Assert.assertFalse(descriptor.isDeploymentError());
+        descriptor.validate();
+    }
+
+    @Test(groups = "cdi-extension")
+    public void testThatProjectionsInApplicationScopeAreDeploymentErrors() throws Exception {
+        Assert.assertNotNull(ClaimExtension.getProjectionError(injectionPoint(AppBean.class, "customer")));
+        Assert.assertNull(ClaimExtension.getProjectionError(injectionPoint(AppBean.class, "customerProvider")));
+        Assert.assertNull(ClaimExtension.getProjectionError(injectionPoint(AppBean.class, "customerId")));
+        Assert.assertNull(ClaimExtension.getProjectionError(injectionPoint(RequestBean.class, "customer")));
+    }
+
+    private static InjectionPoint injectionPoint(Class<?> beanClass, String fieldName) throws NoSuchFieldException {
+        return new FieldInjectionPoint(beanClass.getDeclaredField(fieldName));
+    }
+}
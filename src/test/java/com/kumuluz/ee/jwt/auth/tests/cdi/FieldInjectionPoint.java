@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.cdi;
+
+import javax.enterprise.inject.spi.Annotated;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.InjectionPoint;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Injection point of a field, without a bean.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+class FieldInjectionPoint implements InjectionPoint {
+
+    private final Field field;
+    private final Annotated annotated;
+
+    FieldInjectionPoint(Field field) {
+        this.field = field;
+        this.annotated = new Annotated() {
+            @Override
+            public Type getBaseType() {
+                return field.getGenericType();
+            }
+
+            @Override
+            public Set<Type> getTypeClosure() {
+                return Collections.singleton(field.getGenericType());
+            }
+
+            @Override
+            public <T extends Annotation> T getAnnotation(Class<T> annotationType) {
+                return field.getAnnotation(annotationType);
+            }
+
+            @Override
+            public <T extends Annotation> Set<T> getAnnotations(Class<T> annotationType) {
+                return new HashSet<>(Arrays.asList(field.getAnnotationsByType(annotationType)));
+            }
+
+            @Override
+            public Set<Annotation> getAnnotations() {
+                return new HashSet<>(Arrays.asList(field.getAnnotations()));
+            }
+
+            @Override
+            public boolean isAnnotationPresent(Class<? extends Annotation> annotationType) {
+                return field.isAnnotationPresent(annotationType);
+            }
+        };
+    }
+
+    @Override
+    public Type getType() {
+        return field.getGenericType();
+    }
+
+    @Override
+    public Set<Annotation> getQualifiers() {
+        return annotated.getAnnotations();
+    }
+
+    @Override
+    public Bean<?> getBean() {
+        return null;
+    }
+
+    @Override
+    public Member getMember() {
+        return field;
+    }
+
+    @Override
+    public Annotated getAnnotated() {
+        return annotated;
+    }
+
+    @Override
+    public boolean isDelegate() {
+        return false;
+    }
+
+    @Override
+    public boolean isTransient() {
+        return false;
+    }
+}
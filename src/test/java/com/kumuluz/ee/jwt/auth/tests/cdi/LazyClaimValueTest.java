@@ -0,0 +1,79 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.cdi;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.kumuluz.ee.jwt.auth.cdi.ClaimDescriptor;
+import com.kumuluz.ee.jwt.auth.cdi.LazyClaimValue;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.eclipse.microprofile.jwt.Claim;
+import org.eclipse.microprofile.jwt.ClaimValue;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.JsonString;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests lazy resolution of injected claim values.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class LazyClaimValueTest {
+
+    static class RequestBean {
+        @Claim("customer-id")
+        ClaimValue<String> customerId;
+    }
+
+    @Test(groups = "cdi-extension")
+    public void testThatClaimIsResolvedOnAccessPerToken() throws Exception {
+        ClaimDescriptor descriptor = ClaimDescriptor.of(
+                new FieldInjectionPoint(RequestBean.class.getDeclaredField("customerId")));
+        AtomicReference<JsonWebToken> currentPrincipal = new AtomicReference<>(createPrincipal("c-1"));
+        AtomicInteger conversions = new AtomicInteger();
+
+        ClaimValue<String> claimValue = new LazyClaimValue<>(descriptor, currentPrincipal::get, claim -> {
+            conversions.incrementAndGet();
+            return ((JsonString) claim).getString();
+        });
+
+        Assert.assertEquals(claimValue.getName(), "customer-id");
+        Assert.assertEquals(conversions.get(), 0);
+
+        Assert.assertEquals(claimValue.getValue(), "c-1");
+        Assert.assertEquals(claimValue.getValue(), "c-1");
+        Assert.assertEquals(conversions.get(), 1);
+
+        currentPrincipal.set(createPrincipal("c-2"));
+        Assert.assertEquals(claimValue.getValue(), "c-2");
+        Assert.assertEquals(conversions.get(), 2);
+    }
+
+    private static JWTPrincipal createPrincipal(String customerId) {
+        String token = JWT.create().withClaim("customer-id", customerId).sign(Algorithm.HMAC256("secret"));
+        return new JWTPrincipal("jdoe", token, JWT.decode(token).getClaims());
+    }
+}
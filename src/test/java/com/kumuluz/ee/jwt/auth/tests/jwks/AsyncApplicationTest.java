@@ -0,0 +1,123 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
+import org.jboss.arquillian.test.api.ArquillianResource;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.net.URL;
+
+/**
+ * Tests the authorization filter in asynchronous validation mode.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class AsyncApplicationTest extends Arquillian {
+
+    private static final int PORT = 8090;
+
+    @Deployment
+    public static WebArchive createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addClass(JwksApplication.class)
+                .addClass(JwksResource.class)
+                .addAsResource("assets/jwks-async-config.yml", "config.yml")
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @ArquillianResource
+    private URL baseURL;
+
+    private JwksServer jwksServer;
+
+    @Test(priority = 0, groups = "validator")
+    @RunAsClient
+    public void startJwksServer() throws Exception {
+        jwksServer = new JwksServer(new KeyTool(getClass().getResource("/good_key.pem").toURI()), PORT);
+        jwksServer.start();
+    }
+
+    @Test(priority = Integer.MAX_VALUE, groups = "validator")
+    @RunAsClient
+    public void stopJwksServer() {
+        jwksServer.stop();
+    }
+
+    @Test(priority = 1, groups = "validator")
+    @RunAsClient
+    public void testThatRequestIsUnavailableWhileKeysAreLoaded() throws Exception {
+        String token = new JwtTool(new KeyTool(getClass().getResource("/good_key.pem").toURI()),
+                "http://example.com").generateSignedJwt("tester");
+
+        Response received = get(token);
+        Assert.assertEquals(received.getStatus(), 503);
+        Assert.assertEquals(received.getHeaderString(HttpHeaders.RETRY_AFTER), "1");
+
+        for (int i = 0; i < 50 && received.getStatus() == 503; i++) {
+            Thread.sleep(100);
+            received = get(token);
+        }
+        Assert.assertEquals(received.getStatus(), 200);
+    }
+
+    @Test(priority = 2, groups = "validator")
+    @RunAsClient
+    public void testThatUnknownKeyIdIsUnauthorized() throws Exception {
+        String token = new JwtTool(new KeyTool(getClass().getResource("/good_key.pem").toURI(), "unknown-key"),
+                "http://example.com").generateSignedJwt("tester");
+
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(get(token).getStatus(), 401);
+        }
+
+        // at most one background fetch for the unknown key id, as fetches are throttled
+        Assert.assertTrue(jwksServer.getRequestCount() <= 2, "JWKS was fetched " + jwksServer.getRequestCount() +
+                " times.");
+    }
+
+    @Test(priority = 2, groups = "validator")
+    @RunAsClient
+    public void testThatForgedTokenIsUnauthorized() throws Exception {
+        String token = new JwtTool(new KeyTool(getClass().getResource("/bad_key.pem").toURI()),
+                "http://example.com").generateSignedJwt("tester");
+
+        Assert.assertEquals(get(token).getStatus(), 401);
+    }
+
+    private Response get(String token) {
+        return ClientBuilder.newClient().target(baseURL + "test")
+                .request(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .get();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.helper.ValidationExecutors;
+import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
+import com.kumuluz.ee.jwt.auth.validator.RejectionReason;
+import com.kumuluz.ee.jwt.auth.validator.ValidationResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that asynchronous validation never waits for keys on the calling thread.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class AsyncValidationTest {
+
+    private static final int PORT = 8088;
+
+    @Test(groups = "validator")
+    public void testThatTokenWithLoadedKeyIsValidatedOnCallingThread() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setDecodedPublicKey(keyTool.getPublicKey());
+        jwtContextInfo.setIssuer("http://example.com");
+
+        CompletableFuture<ValidationResult> result = JWTValidator.validateAsync(
+                new JwtTool(keyTool, "http://example.com").generateSignedJwt(), jwtContextInfo, runnable -> {
+                    throw new AssertionError("Token with a loaded key was validated on the executor.");
+                }).toCompletableFuture();
+
+        Assert.assertTrue(result.isDone());
+        Assert.assertTrue(result.get().isAccepted());
+        Assert.assertEquals(result.get().getPrincipal().getName(), "FAKE_USER");
+    }
+
+    @Test(groups = "validator")
+    public void testThatKeyIsLoadedOnExecutor() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.setResponseDelay(500);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        ExecutorService executor = ValidationExecutors.newExecutor(true, 2, 10);
+        try {
+            String token = new JwtTool(keyTool, "http://example.com").generateSignedJwt();
+
+            long start = System.nanoTime();
+            CompletableFuture<ValidationResult> result = JWTValidator.validateAsync(token, jwtContextInfo, executor)
+                    .toCompletableFuture();
+            Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+            Assert.assertFalse(result.isDone());
+
+            Assert.assertTrue(result.get(5, TimeUnit.SECONDS).isAccepted());
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+
+            // the key is loaded now
+            CompletableFuture<ValidationResult> second = JWTValidator.validateAsync(token, jwtContextInfo, executor)
+                    .toCompletableFuture();
+            Assert.assertTrue(second.isDone());
+            Assert.assertTrue(second.get().isAccepted());
+        } finally {
+            executor.shutdownNow();
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "validator")
+    public void testThatTokenIsNotValidatedBeforeKeysAreLoaded() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.setResponseDelay(300);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        try {
+            String token = new JwtTool(keyTool, "http://example.com").generateSignedJwt();
+
+            for (int i = 0; i < 5; i++) {
+                Assert.assertNull(JWTValidator.validateIfKeyLoaded(token, jwtContextInfo));
+                jwtContextInfo.refreshKeysInBackground();
+            }
+            Assert.assertEquals(jwtContextInfo.getValidationMetrics().getAcceptedCount(), 0);
+            Assert.assertEquals(jwtContextInfo.getValidationMetrics().getRejectedCount(), 0);
+
+            for (int i = 0; i < 50 && !jwtContextInfo.isReady(); i++) {
+                Thread.sleep(100);
+            }
+
+            Assert.assertTrue(JWTValidator.validateIfKeyLoaded(token, jwtContextInfo).isAccepted());
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "validator")
+    public void testThatUnknownKeyIdOfLoadedKeySetIsRejectedOnCallingThread() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final KeyTool unknownKeyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "unknown-key");
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        try {
+            Assert.assertTrue(jwtContextInfo.prefetchKeys());
+
+            for (int i = 0; i < 10; i++) {
+                CompletableFuture<ValidationResult> result = JWTValidator.validateAsync(
+                        new JwtTool(unknownKeyTool, "http://example.com").generateSignedJwt(), jwtContextInfo,
+                        runnable -> {
+                            throw new AssertionError("Token with an unknown key id was validated on the executor.");
+                        }).toCompletableFuture();
+
+                Assert.assertTrue(result.isDone());
+                Assert.assertEquals(result.get().getReason(), RejectionReason.UNKNOWN_KEY_ID);
+            }
+
+            // the background fetch is throttled, as the key set was just fetched
+            Thread.sleep(200);
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "validator")
+    public void testThatWaitingValidationsAreBounded() throws Exception {
+        ExecutorService executor = ValidationExecutors.newExecutor(false, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            executor.execute(() -> {
+            });
+
+            try {
+                executor.execute(() -> {
+                });
+                Assert.fail("Task should be rejected when the queue is full.");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(groups = "validator")
+    public void testThatRejectedValidationIsKeyUnavailable() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        try {
+            CompletableFuture<ValidationResult> result = JWTValidator.validateAsync(
+                    new JwtTool(keyTool, "http://example.com").generateSignedJwt(), jwtContextInfo, runnable -> {
+                        throw new RejectedExecutionException();
+                    }).toCompletableFuture();
+
+            Assert.assertTrue(result.isDone());
+            Assert.assertEquals(result.get().getReason(), RejectionReason.KEY_UNAVAILABLE);
+            Assert.assertEquals(jwtContextInfo.getValidationMetrics()
+                    .getRejectedCount(RejectionReason.KEY_UNAVAILABLE), 1);
+        } finally {
+            jwtContextInfo.destroy();
+        }
+    }
+
+    @Test(groups = "validator")
+    public void testThatRejectionDoesNotWaitForKey() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.org");
+        jwtContextInfo.initJwks();
+
+        try {
+            CompletableFuture<ValidationResult> result = JWTValidator.validateAsync(
+                    new JwtTool(keyTool, "http://example.com").generateSignedJwt(), jwtContextInfo, runnable -> {
+                        throw new AssertionError("Token with an unexpected issuer was validated on the executor.");
+                    }).toCompletableFuture();
+
+            Assert.assertTrue(result.isDone());
+            Assert.assertEquals(result.get().getReason(), RejectionReason.WRONG_ISSUER);
+        } finally {
+            jwtContextInfo.destroy();
+        }
+    }
+}
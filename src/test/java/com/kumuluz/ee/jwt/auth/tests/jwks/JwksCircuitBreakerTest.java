@@ -0,0 +1,147 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.helper.CircuitBreaker;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import com.kumuluz.ee.jwt.auth.helper.KeyUnavailableException;
+import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
+import com.kumuluz.ee.jwt.auth.validator.RejectionReason;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests timeouts and the circuit breaker around JWKS fetches.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksCircuitBreakerTest {
+
+    private static final int PORT = 8086;
+
+    @Test(groups = "jwks")
+    public void testThatHungJwksTimesOut() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.setResponseDelay(3000);
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .timeouts(500, 200, TimeUnit.MILLISECONDS)
+                .build()) {
+            long start = System.currentTimeMillis();
+            Assert.assertFalse(keyProvider.prefetch());
+            Assert.assertTrue(System.currentTimeMillis() - start < 2000);
+        } finally {
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatOpenCircuitBreakerFailsFast() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .minRefetchInterval(0, TimeUnit.SECONDS)
+                .circuitBreaker(2, 1, TimeUnit.MINUTES)
+                .build()) {
+            CircuitBreaker circuitBreaker = keyProvider.getCircuitBreaker();
+
+            for (int i = 0; i < 3; i++) {
+                try {
+                    keyProvider.getPublicKeyById(keyTool.getJwkKeyId());
+                    Assert.fail("Key shouldn't be fetched from an unavailable JWKS.");
+                } catch (KeyUnavailableException e) {
+                    // expected
+                }
+            }
+
+            Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+            Assert.assertEquals(circuitBreaker.getTransitionCount(CircuitBreaker.State.OPEN), 1L);
+            Assert.assertEquals(circuitBreaker.getRejectedCount(), 1L);
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatUnavailableJwksIsDistinguishedFromUnknownKeyId() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final KeyTool unknownKeyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "unknown");
+        final String token = new JwtTool(keyTool, "http://example.com").generateSignedJwt();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.setJwksMinRefetchInterval(0);
+        jwtContextInfo.setJwksFailureThreshold(2);
+        jwtContextInfo.initJwks();
+
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        try {
+            // the JWKS server is down, then the circuit breaker is open
+            for (int i = 0; i < 3; i++) {
+                Assert.assertEquals(JWTValidator.validate(token, jwtContextInfo).getReason(),
+                        RejectionReason.KEY_UNAVAILABLE);
+            }
+            Assert.assertEquals(jwtContextInfo.getValidationMetrics()
+                    .getRejectedCount(RejectionReason.KEY_UNAVAILABLE), 3);
+            Assert.assertEquals(jwtContextInfo.getValidationMetrics()
+                    .getRejectedCount(RejectionReason.UNKNOWN_KEY_ID), 0);
+            Assert.assertEquals(jwtContextInfo.getJwksCircuitBreaker().getState(), CircuitBreaker.State.OPEN);
+            Assert.assertEquals(jwtContextInfo.getJwksCircuitBreaker().getRejectedCount(), 1L);
+
+            jwtContextInfo.destroy();
+            jwtContextInfo.initJwks();
+            jwksServer.start();
+
+            Assert.assertTrue(JWTValidator.validate(token, jwtContextInfo).isAccepted());
+            Assert.assertEquals(JWTValidator.validate(new JwtTool(unknownKeyTool, "http://example.com")
+                    .generateSignedJwt(), jwtContextInfo).getReason(), RejectionReason.UNKNOWN_KEY_ID);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatCircuitBreakerClosesAfterSuccessfulTrial() throws Exception {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 1, 100);
+
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.OPEN);
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+
+        Thread.sleep(150);
+
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.HALF_OPEN);
+        Assert.assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess();
+        Assert.assertEquals(circuitBreaker.getState(), CircuitBreaker.State.CLOSED);
+        Assert.assertTrue(circuitBreaker.tryAcquire());
+    }
+}
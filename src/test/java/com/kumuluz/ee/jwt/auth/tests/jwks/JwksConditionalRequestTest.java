@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests conditional JWKS requests and honoring of the Cache-Control header.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksConditionalRequestTest {
+
+    private static final int PORT = 8084;
+
+    @Test(groups = "jwks")
+    public void testThatUnchangedJwksIsNotDownloadedAgain() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .refreshInterval(50, TimeUnit.MILLISECONDS)
+                .build()) {
+            for (int i = 0; i < 50 && jwksServer.getNotModifiedCount() < 2; i++) {
+                Thread.sleep(50);
+            }
+
+            Assert.assertTrue(jwksServer.getNotModifiedCount() >= 2);
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+        } finally {
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatMaxAgeDoesNotDelayRefreshBeyondInterval() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.setCacheControl("public, max-age=3600");
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .refreshInterval(50, TimeUnit.MILLISECONDS)
+                .build()) {
+            for (int i = 0; i < 50 && jwksServer.getRequestCount() < 3; i++) {
+                Thread.sleep(50);
+            }
+
+            Assert.assertTrue(jwksServer.getRequestCount() >= 3);
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+        } finally {
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatShorterMaxAgeAdvancesRefresh() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.setCacheControl("public, max-age=1");
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .refreshInterval(1, TimeUnit.HOURS)
+                .minRefetchInterval(0, TimeUnit.SECONDS)
+                .build()) {
+            for (int i = 0; i < 60 && jwksServer.getRequestCount() < 2; i++) {
+                Thread.sleep(50);
+            }
+
+            Assert.assertEquals(jwksServer.getRequestCount(), 2);
+            Assert.assertTrue(keyProvider.isReady());
+        } finally {
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatMaxAgeLongerThanMaxStalenessDoesNotLetKeysGetStale() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.setCacheControl("public, max-age=3600");
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .refreshInterval(1, TimeUnit.HOURS)
+                .maxStaleness(400, TimeUnit.MILLISECONDS)
+                .build()) {
+            for (int i = 0; i < 50 && keyProvider.getLoadedAt() == 0; i++) {
+                Thread.sleep(50);
+            }
+
+            // the keys are refreshed in the background every 200 ms, so they are never stale
+            for (int i = 0; i < 10; i++) {
+                Thread.sleep(100);
+                Assert.assertNotNull(keyProvider.getLoadedPublicKeyById(keyTool.getJwkKeyId()));
+            }
+            Assert.assertTrue(jwksServer.getRequestCount() >= 4);
+        } finally {
+            jwksServer.stop();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Tests that fetches caused by unknown key ids are coalesced and throttled.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksFetchThrottlingTest {
+
+    private static final int PORT = 8083;
+
+    @Test(groups = "jwks")
+    public void testThatUnknownKeyIdsDoNotFloodJwks() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .minRefetchInterval(1, TimeUnit.MINUTES)
+                .build()) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> lookups = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                String keyId = "unknown-" + i;
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    return keyProvider.getPublicKeyById(keyId);
+                }));
+            }
+            start.countDown();
+
+            for (Future<?> lookup : lookups) {
+                try {
+                    lookup.get();
+                    Assert.fail("Unknown key id was resolved.");
+                } catch (ExecutionException e) {
+                    Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+                }
+            }
+
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+        } finally {
+            executor.shutdownNow();
+            jwksServer.stop();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cache.EvictionPolicy;
+import com.kumuluz.ee.jwt.auth.cache.RejectedTokenCache;
+import com.kumuluz.ee.jwt.auth.cache.TokenCache;
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
+import com.kumuluz.ee.jwt.auth.validator.JWTVerifierRegistry;
+import com.kumuluz.ee.jwt.auth.validator.RejectionReason;
+import com.kumuluz.ee.jwt.auth.validator.SignatureVerifier;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that verifiers and cached validation results of rotated and removed JWKS keys are dropped when the key set is
+ * reloaded.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksKeyRotationTest {
+
+    private static final int PORT = 8089;
+
+    @Test(groups = "jwks")
+    public void testThatVerifiersOfRotatedAndRemovedKeysAreDropped() throws Exception {
+        final KeyTool firstKey = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "first");
+        final KeyTool secondKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "second");
+        final KeyTool rotatedFirstKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "first");
+        final JwksServer jwksServer = new JwksServer(firstKey, PORT);
+        jwksServer.setKeyTools(firstKey, secondKey);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+        JWTVerifierRegistry verifierRegistry = jwtContextInfo.getVerifierRegistry();
+
+        try {
+            Assert.assertTrue(JWTValidator.validate(new JwtTool(firstKey, "http://example.com").generateSignedJwt(),
+                    jwtContextInfo).isAccepted());
+            Assert.assertTrue(JWTValidator.validate(new JwtTool(secondKey, "http://example.com").generateSignedJwt(),
+                    jwtContextInfo).isAccepted());
+            Assert.assertEquals(verifierRegistry.size(), 2);
+            SignatureVerifier firstVerifier = verifierRegistry.getVerifier("first", firstKey.getPublicKey());
+
+            // the first key is rotated, the second one is removed
+            jwksServer.setKeyTools(rotatedFirstKey);
+            Assert.assertTrue(jwtContextInfo.prefetchKeys());
+            Assert.assertEquals(verifierRegistry.size(), 0);
+
+            Assert.assertTrue(JWTValidator.validate(
+                    new JwtTool(rotatedFirstKey, "http://example.com").generateSignedJwt(), jwtContextInfo)
+                    .isAccepted());
+            Assert.assertEquals(JWTValidator.validate(
+                    new JwtTool(secondKey, "http://example.com").generateSignedJwt(), jwtContextInfo).getReason(),
+                    RejectionReason.UNKNOWN_KEY_ID);
+            Assert.assertEquals(verifierRegistry.size(), 1);
+            Assert.assertNotSame(verifierRegistry.getVerifier("first", rotatedFirstKey.getPublicKey()), firstVerifier);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatCachedPrincipalOfRemovedKeyIsDropped() throws Exception {
+        final KeyTool firstKey = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "first");
+        final KeyTool secondKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "second");
+        final JwksServer jwksServer = new JwksServer(firstKey, PORT);
+        jwksServer.setKeyTools(firstKey, secondKey);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.setTokenCache(new TokenCache(10, EvictionPolicy.LRU));
+        jwtContextInfo.initJwks();
+
+        try {
+            String token = new JwtTool(secondKey, "http://example.com").generateSignedJwt();
+            Assert.assertTrue(JWTValidator.validate(token, jwtContextInfo).isAccepted());
+            Assert.assertEquals(jwtContextInfo.getTokenCache().size(), 1);
+
+            // the second key is revoked
+            jwksServer.setKeyTools(firstKey);
+            Assert.assertTrue(jwtContextInfo.prefetchKeys());
+
+            Assert.assertEquals(jwtContextInfo.getTokenCache().size(), 0);
+            Assert.assertEquals(JWTValidator.validate(token, jwtContextInfo).getReason(),
+                    RejectionReason.UNKNOWN_KEY_ID);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatCachedRejectionOfRotatedKeyIsDropped() throws Exception {
+        final KeyTool oldKey = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "first");
+        final KeyTool newKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "first");
+        final JwksServer jwksServer = new JwksServer(oldKey, PORT);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.setRejectedTokenCache(new RejectedTokenCache(10, 1, TimeUnit.MINUTES));
+        jwtContextInfo.initJwks();
+
+        try {
+            // signed with the new key before the key set is rotated
+            String token = new JwtTool(newKey, "http://example.com").generateSignedJwt();
+            Assert.assertEquals(JWTValidator.validate(token, jwtContextInfo).getReason(),
+                    RejectionReason.BAD_SIGNATURE);
+            Assert.assertEquals(jwtContextInfo.getRejectedTokenCache().size(), 1);
+
+            jwksServer.setKeyTools(newKey);
+            Assert.assertTrue(jwtContextInfo.prefetchKeys());
+
+            Assert.assertTrue(JWTValidator.validate(token, jwtContextInfo).isAccepted());
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatUnchangedKeySetKeepsVerifiers() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        try {
+            String token = new JwtTool(keyTool, "http://example.com").generateSignedJwt();
+            Assert.assertTrue(JWTValidator.validate(token, jwtContextInfo).isAccepted());
+
+            Assert.assertTrue(jwtContextInfo.prefetchKeys());
+            Assert.assertEquals(jwtContextInfo.getVerifierRegistry().size(), 1);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatKeySourceChangeDropsVerifiersAndCachedPrincipals() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.setTokenCache(new TokenCache(10, EvictionPolicy.LRU));
+        jwtContextInfo.initJwks();
+
+        try {
+            String token = new JwtTool(keyTool, "http://example.com").generateSignedJwt();
+            Assert.assertTrue(JWTValidator.validate(token, jwtContextInfo).isAccepted());
+            Assert.assertEquals(jwtContextInfo.getVerifierRegistry().size(), 1);
+            Assert.assertEquals(jwtContextInfo.getTokenCache().size(), 1);
+
+            // the key set is loaded from a new source
+            jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/other-jwks");
+            jwtContextInfo.initJwks();
+
+            Assert.assertEquals(jwtContextInfo.getVerifierRegistry().size(), 0);
+            Assert.assertEquals(jwtContextInfo.getTokenCache().size(), 0);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+}
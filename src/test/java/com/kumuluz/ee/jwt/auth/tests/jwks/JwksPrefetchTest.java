@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests prefetching of JWKS keys and the readiness of the key provider.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksPrefetchTest {
+
+    private static final int PORT = 8085;
+
+    @Test(groups = "jwks")
+    public void testThatPrefetchedKeysAreReady() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .build()) {
+            Assert.assertFalse(keyProvider.isReady());
+            Assert.assertTrue(keyProvider.prefetch());
+            Assert.assertTrue(keyProvider.isReady());
+
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+        } finally {
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatFailedPrefetchIsRetried() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .minRefetchInterval(1, TimeUnit.SECONDS)
+                .build()) {
+            Assert.assertFalse(keyProvider.prefetch());
+            Assert.assertFalse(keyProvider.isReady());
+
+            jwksServer.start();
+            for (int i = 0; i < 50 && !keyProvider.isReady(); i++) {
+                Thread.sleep(100);
+            }
+
+            Assert.assertTrue(keyProvider.isReady());
+        } finally {
+            jwksServer.stop();
+        }
+    }
+}
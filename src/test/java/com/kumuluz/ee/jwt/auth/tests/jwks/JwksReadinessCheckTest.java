@@ -0,0 +1,99 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.health.JwksReadinessCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Field;
+
+/**
+ * Tests that the readiness check reports the instance as ready only once the JWKS keys are loaded.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksReadinessCheckTest {
+
+    private static final int PORT = 8094;
+
+    @Test(groups = "jwks")
+    public void testThatCheckIsDownUntilKeysAreLoaded() throws Exception {
+        final JwksServer jwksServer = new JwksServer(new KeyTool(getClass().getResource("/good_key.pem").toURI()),
+                PORT);
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        try {
+            JwksReadinessCheck readinessCheck = readinessCheck(jwtContextInfo);
+
+            HealthCheckResponse response = readinessCheck.call();
+            Assert.assertEquals(response.getName(), "JwtAuthKeysReadinessCheck");
+            Assert.assertEquals(response.getState(), HealthCheckResponse.State.DOWN);
+
+            Assert.assertTrue(jwtContextInfo.prefetchKeys());
+            Assert.assertEquals(readinessCheck.call().getState(), HealthCheckResponse.State.UP);
+        } finally {
+            jwtContextInfo.destroy();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatCheckIsDownWhenKeysCannotBeLoaded() throws Exception {
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.setIssuer("http://example.com");
+        jwtContextInfo.initJwks();
+
+        try {
+            Assert.assertFalse(jwtContextInfo.prefetchKeys());
+            Assert.assertEquals(readinessCheck(jwtContextInfo).call().getState(), HealthCheckResponse.State.DOWN);
+        } finally {
+            jwtContextInfo.destroy();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatCheckIsUpWithConfiguredPublicKey() throws Exception {
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setDecodedPublicKey(new KeyTool(getClass().getResource("/good_key.pem").toURI())
+                .getPublicKey());
+
+        Assert.assertEquals(readinessCheck(jwtContextInfo).call().getState(), HealthCheckResponse.State.UP);
+    }
+
+    private static JwksReadinessCheck readinessCheck(JWTContextInfo jwtContextInfo) throws Exception {
+        JwksReadinessCheck readinessCheck = new JwksReadinessCheck();
+        Field field = JwksReadinessCheck.class.getDeclaredField("jwtContextInfo");
+        field.setAccessible(true);
+        field.set(readinessCheck, jwtContextInfo);
+
+        return readinessCheck;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProvider;
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests background refresh of JWKS keys.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JwksRefreshTest {
+
+    private static final int PORT = 8082;
+    private static final int OTHER_PORT = 8092;
+
+    @Test(groups = "jwks")
+    public void testThatReplacedKeyProviderStopsRefreshing() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer previousJwksServer = new JwksServer(keyTool, PORT);
+        final JwksServer jwksServer = new JwksServer(keyTool, OTHER_PORT);
+        previousJwksServer.start();
+        jwksServer.start();
+
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setJwksRefreshInterval(1);
+        jwtContextInfo.setJwksUri("http://localhost:" + PORT + "/jwks");
+        jwtContextInfo.initJwks();
+
+        try {
+            for (int i = 0; i < 50 && previousJwksServer.getRequestCount() == 0; i++) {
+                Thread.sleep(50);
+            }
+
+            jwtContextInfo.setJwksUri("http://localhost:" + OTHER_PORT + "/jwks");
+            jwtContextInfo.initJwks();
+            int previousRequestCount = previousJwksServer.getRequestCount();
+
+            Thread.sleep(2500);
+
+            Assert.assertEquals(previousJwksServer.getRequestCount(), previousRequestCount);
+            Assert.assertTrue(jwksServer.getRequestCount() >= 2);
+        } finally {
+            jwtContextInfo.destroy();
+            previousJwksServer.stop();
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatLastKeysAreUsedWhileJwksIsUnavailable() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .refreshInterval(100, TimeUnit.MILLISECONDS)
+                .build()) {
+            awaitLoaded(keyProvider);
+            jwksServer.stop();
+
+            long loadedAt = keyProvider.getLoadedAt();
+            Thread.sleep(300);
+
+            Assert.assertEquals(keyProvider.getLoadedAt(), loadedAt);
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+        }
+    }
+
+    @Test(groups = "jwks", expectedExceptions = IllegalArgumentException.class)
+    public void testThatStaleKeysAreNotUsed() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(new URL("http://localhost:" + PORT + "/jwks"))
+                .refreshInterval(100, TimeUnit.MILLISECONDS)
+                .maxStaleness(200, TimeUnit.MILLISECONDS)
+                .build()) {
+            awaitLoaded(keyProvider);
+            jwksServer.stop();
+
+            Thread.sleep(500);
+
+            keyProvider.getPublicKeyById(keyTool.getJwkKeyId());
+        }
+    }
+
+    @Test(groups = "jwks")
+    public void testThatSnapshotIsUsedWhileJwksIsUnavailable() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        final Path snapshotFile = Files.createTempDirectory("jwks").resolve("jwks.json");
+        final URL jwksUri = new URL("http://localhost:" + PORT + "/jwks");
+        jwksServer.start();
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(jwksUri).snapshotFile(snapshotFile).build()) {
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+        } finally {
+            jwksServer.stop();
+        }
+
+        Assert.assertTrue(Files.exists(snapshotFile));
+
+        try (JwksRSAKeyProvider keyProvider = new JwksRSAKeyProviderBuilder(jwksUri).snapshotFile(snapshotFile).build()) {
+            Assert.assertNotEquals(keyProvider.getLoadedAt(), 0L);
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+        }
+    }
+
+    private static void awaitLoaded(JwksRSAKeyProvider keyProvider) throws InterruptedException {
+        for (int i = 0; i < 50 && keyProvider.getLoadedAt() == 0; i++) {
+            Thread.sleep(100);
+        }
+
+        Assert.assertNotEquals(keyProvider.getLoadedAt(), 0L);
+    }
+}
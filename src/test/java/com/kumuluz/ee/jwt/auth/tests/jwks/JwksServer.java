@@ -24,9 +24,11 @@ import com.sun.net.httpserver.HttpServer;
 
 import java.nio.charset.StandardCharsets;
 import javax.json.Json;
+import javax.json.JsonArrayBuilder;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Serves a simple jwks.
@@ -35,12 +37,16 @@ import java.net.InetSocketAddress;
  * @since 1.1.0
  */
 final class JwksServer {
-    private final KeyTool keyTool;
+    private volatile KeyTool[] keyTools;
     private final int port;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+    private volatile String cacheControl;
+    private volatile long responseDelay;
     private HttpServer httpServer;
 
     JwksServer(final KeyTool keyTool, final int port) {
-        this.keyTool = keyTool;
+        this.keyTools = new KeyTool[]{keyTool};
         this.port = port;
     }
 
@@ -51,20 +57,81 @@ final class JwksServer {
 
         httpServer = HttpServer.create(new InetSocketAddress(port), 0);
         httpServer.createContext("/jwks", httpExchange -> {
+            requestCount.incrementAndGet();
+            if (responseDelay > 0) {
+                try {
+                    Thread.sleep(responseDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final JsonArrayBuilder keys = Json.createArrayBuilder();
+            for (final KeyTool keyTool : keyTools) {
+                keys.add(keyTool.getJwkObject());
+            }
             final String jwks = Json.createObjectBuilder()
-                    .add("keys", Json.createArrayBuilder().add(keyTool.getJwkObject()))
+                    .add("keys", keys)
                     .build()
                     .toString();
             final byte[] jwksBytes = jwks.getBytes(StandardCharsets.UTF_8);
-            httpExchange.sendResponseHeaders(200, jwks.length());
+            final String entityTag = "\"" + Integer.toHexString(jwks.hashCode()) + "\"";
+            httpExchange.getResponseHeaders().add("ETag", entityTag);
+            if (cacheControl != null) {
+                httpExchange.getResponseHeaders().add("Cache-Control", cacheControl);
+            }
+            if (entityTag.equals(httpExchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                httpExchange.sendResponseHeaders(304, -1);
+                httpExchange.close();
+                return;
+            }
+            httpExchange.sendResponseHeaders(200, jwksBytes.length);
             try (final OutputStream responseBody = httpExchange.getResponseBody()) {
                 responseBody.write(jwksBytes);
             }
         });
 
+        httpServer.createContext("/.well-known/openid-configuration", httpExchange -> {
+            final String configuration = Json.createObjectBuilder()
+                    .add("issuer", getIssuer())
+                    .add("jwks_uri", getIssuer() + "/jwks")
+                    .add("id_token_signing_alg_values_supported", Json.createArrayBuilder().add("RS256"))
+                    .build()
+                    .toString();
+            final byte[] configurationBytes = configuration.getBytes(StandardCharsets.UTF_8);
+            httpExchange.sendResponseHeaders(200, configurationBytes.length);
+            try (final OutputStream responseBody = httpExchange.getResponseBody()) {
+                responseBody.write(configurationBytes);
+            }
+        });
+
         httpServer.start();
     }
 
+    String getIssuer() {
+        return "http://localhost:" + port;
+    }
+
+    int getRequestCount() {
+        return requestCount.get();
+    }
+
+    int getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    void setCacheControl(final String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    void setResponseDelay(final long responseDelay) {
+        this.responseDelay = responseDelay;
+    }
+
+    void setKeyTools(final KeyTool... keyTools) {
+        this.keyTools = keyTools;
+    }
+
     synchronized void stop() {
         if (httpServer != null) {
             httpServer.stop(1);
@@ -52,7 +52,7 @@ import javax.json.JsonObject;
 final class KeyTool {
     private RSAPublicKey publicKey;
     private RSAPrivateCrtKey privateKey;
-    private final String keyId = "TESTSUITE_KEY_ID";
+    private final String keyId;
 
     /**
      * Returns a new {@link KeyTool} fully prepared with a RSA Key Pair.
@@ -61,6 +61,18 @@ final class KeyTool {
      * @throws IllegalArgumentException thrown if RSA and/or a key-length of 2048 bit is not supported by the JVM.
      */
     public KeyTool(final URI pkcs8Key) {
+        this(pkcs8Key, "TESTSUITE_KEY_ID");
+    }
+
+    /**
+     * Returns a new {@link KeyTool} fully prepared with a RSA Key Pair and the given key identifier.
+     *
+     * @param pkcs8Key PKCS8-formatted private key
+     * @param keyId    key identifier
+     * @throws IllegalArgumentException thrown if RSA and/or a key-length of 2048 bit is not supported by the JVM.
+     */
+    KeyTool(final URI pkcs8Key, final String keyId) {
+        this.keyId = keyId;
         prepare(pkcs8Key);
     }
 
@@ -105,6 +117,15 @@ final class KeyTool {
         return Base64.getEncoder().encodeToString(publicKey.getEncoded());
     }
 
+    /**
+     * Returns the public key.
+     *
+     * @return public key.
+     */
+    RSAPublicKey getPublicKey() {
+        return publicKey;
+    }
+
     /**
      * Returns the private key.
      *
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.context.JWTSecurityContext;
+import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
+import com.kumuluz.ee.jwt.auth.validator.ValidationMetrics;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.net.URISyntaxException;
+
+/**
+ * Tests that lazily authenticated requests verify their token on first use of the principal, at most once.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class LazyAuthenticationTest {
+
+    private static final String ISSUER = "http://example.com";
+
+    @Test(groups = "validator")
+    public void testThatUnusedPrincipalIsNotVerified() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        JWTSecurityContext securityContext = lazySecurityContext(token("good_key.pem"), jwtContextInfo);
+
+        Assert.assertFalse(securityContext.isResolved());
+        Assert.assertEquals(jwtContextInfo.getValidationMetrics().getAcceptedCount(), 0);
+        Assert.assertEquals(jwtContextInfo.getValidationMetrics().getRejectedCount(), 0);
+    }
+
+    @Test(groups = "validator")
+    public void testThatPrincipalIsVerifiedOnce() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        JWTSecurityContext securityContext = lazySecurityContext(token("good_key.pem"), jwtContextInfo);
+
+        Assert.assertTrue(securityContext.isUserInRole("tester"));
+        Assert.assertTrue(securityContext.isResolved());
+        Assert.assertEquals(securityContext.getUserPrincipal().getName(), "FAKE_USER");
+        Assert.assertFalse(securityContext.isUserInRole("admin"));
+
+        Assert.assertEquals(jwtContextInfo.getValidationMetrics().getAcceptedCount(), 1);
+    }
+
+    @Test(groups = "validator")
+    public void testThatRejectedTokenLeavesRequestUnauthenticated() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        JWTSecurityContext securityContext = lazySecurityContext(token("bad_key.pem"), jwtContextInfo);
+
+        Assert.assertNull(securityContext.getUserPrincipal());
+        Assert.assertFalse(securityContext.isUserInRole("tester"));
+
+        ValidationMetrics metrics = jwtContextInfo.getValidationMetrics();
+        Assert.assertEquals(metrics.getAcceptedCount(), 0);
+        Assert.assertEquals(metrics.getRejectedCount(), 1);
+    }
+
+    private static JWTSecurityContext lazySecurityContext(String token, JWTContextInfo jwtContextInfo) {
+        return new JWTSecurityContext(null, () -> JWTValidator.validate(token, jwtContextInfo).getPrincipal());
+    }
+
+    private JWTContextInfo contextInfo() throws URISyntaxException {
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setDecodedPublicKey(new KeyTool(getClass().getResource("/good_key.pem").toURI()).getPublicKey());
+        jwtContextInfo.setIssuer(ISSUER);
+        jwtContextInfo.setLazyEnabled(true);
+        return jwtContextInfo;
+    }
+
+    private String token(String key) throws URISyntaxException {
+        return new JwtTool(new KeyTool(getClass().getResource("/" + key).toURI()), ISSUER).generateSignedJwt();
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import org.jboss.arquillian.container.test.api.Deployment;
+import org.jboss.arquillian.container.test.api.RunAsClient;
+import org.jboss.arquillian.test.api.ArquillianResource;
+import org.jboss.arquillian.testng.Arquillian;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.EmptyAsset;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.net.URL;
+
+/**
+ * Tests that a token which can't be verified in lazy authentication mode, because no key is configured, is
+ * unauthorized as in eager mode.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class LazyMissingKeyApplicationTest extends Arquillian {
+
+    @Deployment
+    public static WebArchive createDeployment() {
+        return ShrinkWrap.create(WebArchive.class)
+                .addClass(JwksApplication.class)
+                .addClass(LazyResource.class)
+                .addAsResource("assets/lazy-no-key-config.yml", "config.yml")
+                .addAsManifestResource(EmptyAsset.INSTANCE, "beans.xml");
+    }
+
+    @ArquillianResource
+    private URL baseURL;
+
+    @Test(groups = "validator")
+    @RunAsClient
+    public void testThatRolesAllowedIsUnauthorized() throws Exception {
+        Assert.assertEquals(get("lazy").getStatus(), 401);
+        Assert.assertEquals(get("lazy/public").getStatus(), 200);
+    }
+
+    private Response get(String path) throws Exception {
+        String token = new JwtTool(new KeyTool(getClass().getResource("/good_key.pem").toURI()), "http://example.com")
+                .generateSignedJwt("tester");
+
+        return ClientBuilder.newClient().target(baseURL + path)
+                .request()
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .get();
+    }
+}
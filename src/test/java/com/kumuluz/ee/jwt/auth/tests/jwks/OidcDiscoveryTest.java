@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.helper.JwksRSAKeyProviderBuilder;
+import com.kumuluz.ee.jwt.auth.helper.OidcDiscoveryKeyProvider;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests resolving the JWKS location with OpenID Connect discovery.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class OidcDiscoveryTest {
+
+    private static final int PORT = 8087;
+
+    @Test(groups = "jwks")
+    public void testThatJwksIsDiscovered() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+        final JwksServer jwksServer = new JwksServer(keyTool, PORT);
+        jwksServer.start();
+
+        try (OidcDiscoveryKeyProvider keyProvider = new OidcDiscoveryKeyProvider(jwksServer.getIssuer(),
+                TimeUnit.HOURS.toMillis(1), 1000, 1000, url -> new JwksRSAKeyProviderBuilder(url).build())) {
+            for (int i = 0; i < 50 && !keyProvider.isReady(); i++) {
+                Thread.sleep(100);
+            }
+
+            Assert.assertTrue(keyProvider.isReady());
+            Assert.assertEquals(keyProvider.getJwksProvider().getJwksUri().toString(), jwksServer.getIssuer() + "/jwks");
+            Assert.assertSame(keyProvider.getCircuitBreaker(), keyProvider.getJwksProvider().getCircuitBreaker());
+            Assert.assertNotNull(keyProvider.getPublicKeyById(keyTool.getJwkKeyId()));
+            Assert.assertEquals(jwksServer.getRequestCount(), 1);
+        } finally {
+            jwksServer.stop();
+        }
+    }
+
+    @Test(groups = "jwks", expectedExceptions = IllegalArgumentException.class)
+    public void testThatValidationDoesNotWaitForDiscovery() throws Exception {
+        final KeyTool keyTool = new KeyTool(getClass().getResource("/good_key.pem").toURI());
+
+        try (OidcDiscoveryKeyProvider keyProvider = new OidcDiscoveryKeyProvider("http://localhost:" + PORT,
+                TimeUnit.HOURS.toMillis(1), 1000, 1000, url -> new JwksRSAKeyProviderBuilder(url).build())) {
+            Assert.assertFalse(keyProvider.isReady());
+            Assert.assertNull(keyProvider.getCircuitBreaker());
+            keyProvider.getPublicKeyById(keyTool.getJwkKeyId());
+        }
+    }
+}
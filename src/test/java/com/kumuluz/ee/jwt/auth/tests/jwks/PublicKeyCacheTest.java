@@ -0,0 +1,142 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.auth0.jwk.InvalidPublicKeyException;
+import com.auth0.jwk.Jwk;
+import com.kumuluz.ee.jwt.auth.helper.PublicKeyCache;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.JsonObject;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that JWKS keys are decoded once per key set load and that a load replaces the previously loaded keys.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class PublicKeyCacheTest {
+
+    @Test(groups = "jwks")
+    public void testThatKeysAreDecodedOncePerLoad() throws Exception {
+        CountingJwk first = new CountingJwk(new KeyTool(getClass().getResource("/good_key.pem").toURI(), "first"));
+        CountingJwk second = new CountingJwk(new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "second"));
+
+        PublicKeyCache publicKeyCache = new PublicKeyCache();
+        publicKeyCache.load(Arrays.asList(first, second));
+        Assert.assertEquals(first.getDecodeCount(), 1);
+        Assert.assertEquals(second.getDecodeCount(), 1);
+
+        RSAPublicKey firstKey = publicKeyCache.get("first");
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(publicKeyCache.get("first"), firstKey);
+            Assert.assertNotNull(publicKeyCache.get("second"));
+        }
+        Assert.assertEquals(first.getDecodeCount(), 1);
+        Assert.assertEquals(second.getDecodeCount(), 1);
+
+        publicKeyCache.load(Arrays.asList(first, second));
+        Assert.assertEquals(first.getDecodeCount(), 2);
+        Assert.assertEquals(second.getDecodeCount(), 2);
+    }
+
+    @Test(groups = "jwks")
+    public void testThatLoadReplacesKeys() throws Exception {
+        KeyTool firstKey = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "first");
+        KeyTool secondKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "second");
+        KeyTool rotatedFirstKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "first");
+
+        PublicKeyCache publicKeyCache = new PublicKeyCache();
+        publicKeyCache.load(Arrays.asList(new CountingJwk(firstKey), new CountingJwk(secondKey)));
+        Assert.assertEquals(publicKeyCache.size(), 2);
+        Assert.assertEquals(publicKeyCache.get("first"), firstKey.getPublicKey());
+
+        // the first key is rotated, the second one is removed
+        publicKeyCache.load(Collections.singletonList(new CountingJwk(rotatedFirstKey)));
+        Assert.assertEquals(publicKeyCache.size(), 1);
+        Assert.assertEquals(publicKeyCache.get("first"), rotatedFirstKey.getPublicKey());
+        Assert.assertNull(publicKeyCache.get("second"));
+
+        // a token without a key id is verified with the only loaded key
+        Assert.assertEquals(publicKeyCache.get(null), rotatedFirstKey.getPublicKey());
+
+        publicKeyCache.load(Collections.emptyList());
+        Assert.assertTrue(publicKeyCache.isEmpty());
+        Assert.assertNull(publicKeyCache.get("first"));
+    }
+
+    @Test(groups = "jwks")
+    public void testThatListenerIsOnlyCalledWhenKeysChange() throws Exception {
+        KeyTool firstKey = new KeyTool(getClass().getResource("/good_key.pem").toURI(), "first");
+        KeyTool rotatedFirstKey = new KeyTool(getClass().getResource("/bad_key.pem").toURI(), "first");
+
+        AtomicInteger changes = new AtomicInteger();
+        PublicKeyCache publicKeyCache = new PublicKeyCache(keys -> changes.incrementAndGet());
+
+        publicKeyCache.load(Collections.singletonList(new CountingJwk(firstKey)));
+        Assert.assertEquals(changes.get(), 1);
+
+        publicKeyCache.load(Collections.singletonList(new CountingJwk(firstKey)));
+        Assert.assertEquals(changes.get(), 1);
+
+        publicKeyCache.load(Collections.singletonList(new CountingJwk(rotatedFirstKey)));
+        Assert.assertEquals(changes.get(), 2);
+    }
+
+    /**
+     * JWK which counts how many times its public key has been decoded.
+     */
+    private static class CountingJwk extends Jwk {
+
+        private final AtomicInteger decodeCount = new AtomicInteger();
+
+        CountingJwk(KeyTool keyTool) {
+            super(keyTool.getJwkKeyId(), "RSA", "RS256", "sig", Collections.emptyList(), null, null, null,
+                    attributes(keyTool.getJwkObject()));
+        }
+
+        @Override
+        public PublicKey getPublicKey() throws InvalidPublicKeyException {
+            decodeCount.incrementAndGet();
+            return super.getPublicKey();
+        }
+
+        int getDecodeCount() {
+            return decodeCount.get();
+        }
+
+        private static Map<String, Object> attributes(JsonObject jwk) {
+            Map<String, Object> attributes = new HashMap<>();
+            attributes.put("n", jwk.getString("n"));
+            attributes.put("e", jwk.getString("e"));
+
+            return attributes;
+        }
+    }
+}
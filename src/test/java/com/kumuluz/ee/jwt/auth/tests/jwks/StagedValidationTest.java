@@ -0,0 +1,275 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import com.kumuluz.ee.jwt.auth.cache.RejectedTokenCache;
+import com.kumuluz.ee.jwt.auth.cdi.JWTContextInfo;
+import com.kumuluz.ee.jwt.auth.validator.JWTValidationException;
+import com.kumuluz.ee.jwt.auth.validator.JWTValidator;
+import com.kumuluz.ee.jwt.auth.validator.RejectionReason;
+import com.kumuluz.ee.jwt.auth.validator.ValidationMetrics;
+import com.kumuluz.ee.jwt.auth.validator.ValidationResult;
+import com.kumuluz.ee.jwt.auth.validator.ValidationStage;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that tokens are rejected by the cheapest validation stage which can reject them, for the right reason.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class StagedValidationTest {
+
+    private static final String ISSUER = "http://example.com";
+
+    @Test(groups = "validator")
+    public void testThatValidTokenIsAccepted() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+
+        JWTValidator.validateToken(sign(header("RS256"), claims()), jwtContextInfo);
+
+        Assert.assertEquals(jwtContextInfo.getValidationMetrics().getAcceptedCount(), 1);
+        Assert.assertEquals(jwtContextInfo.getValidationMetrics().getRejectedCount(), 0);
+    }
+
+    @Test(groups = "validator")
+    public void testThatOversizedTokenIsRejectedByShape() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        jwtContextInfo.setMaxTokenSize(64);
+
+        assertRejected(sign(header("RS256"), claims()), jwtContextInfo, RejectionReason.TOO_LARGE);
+    }
+
+    @Test(groups = "validator")
+    public void testThatMalformedTokenIsRejectedByShape() throws Exception {
+        assertRejected("not-a-token", contextInfo(), RejectionReason.MALFORMED);
+        assertRejected("e30.e30", contextInfo(), RejectionReason.MALFORMED);
+    }
+
+    @Test(groups = "validator")
+    public void testThatUnsupportedAlgorithmIsRejectedByHeader() throws Exception {
+        assertRejected(sign(header("HS256"), claims()), contextInfo(), RejectionReason.UNSUPPORTED_ALGORITHM);
+        assertRejected(sign(header("none"), claims()), contextInfo(), RejectionReason.UNSUPPORTED_ALGORITHM);
+    }
+
+    @Test(groups = "validator")
+    public void testThatInvalidHeaderIsRejectedByHeader() throws Exception {
+        assertRejected(sign(header("RS256").add("kid", ""), claims()), contextInfo(), RejectionReason.INVALID_KEY_ID);
+        assertRejected(sign(header("RS256").add("kid", 42), claims()), contextInfo(), RejectionReason.INVALID_KEY_ID);
+        assertRejected(sign(header("RS256").add("crit", Json.createArrayBuilder().add("exp")), claims()),
+                contextInfo(), RejectionReason.UNSUPPORTED_CRITICAL_HEADER);
+    }
+
+    @Test(groups = "validator")
+    public void testThatExpiredTokenIsRejectedByClaims() throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        JsonObjectBuilder claims = claims().add("iat", now - 7200).add("exp", now - 3600);
+
+        assertRejected(sign(header("RS256"), claims), contextInfo(), RejectionReason.EXPIRED);
+    }
+
+    @Test(groups = "validator")
+    public void testThatExpirationWithinLeewayIsAccepted() throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+        JsonObjectBuilder claims = claims().add("iat", now - 7200).add("exp", now - 30);
+
+        JWTValidator.validateToken(sign(header("RS256"), claims), contextInfo());
+    }
+
+    @Test(groups = "validator")
+    public void testThatPrematureTokenIsRejectedByClaims() throws Exception {
+        long now = System.currentTimeMillis() / 1000;
+
+        assertRejected(sign(header("RS256"), claims().add("nbf", now + 3600)), contextInfo(),
+                RejectionReason.NOT_YET_VALID);
+        assertRejected(sign(header("RS256"), claims().add("iat", now + 3600)), contextInfo(),
+                RejectionReason.ISSUED_IN_FUTURE);
+    }
+
+    @Test(groups = "validator")
+    public void testThatForeignIssuerIsRejectedByClaims() throws Exception {
+        assertRejected(sign(header("RS256"), claims().add("iss", "http://example.org")), contextInfo(),
+                RejectionReason.WRONG_ISSUER);
+    }
+
+    @Test(groups = "validator")
+    public void testThatAudienceIsValidated() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        jwtContextInfo.setAudiences(Collections.singleton("customers"));
+
+        JWTValidator.validateToken(sign(header("RS256"),
+                claims().add("aud", Json.createArrayBuilder().add("orders").add("customers"))), jwtContextInfo);
+        assertRejected(sign(header("RS256"), claims().add("aud", "orders")), jwtContextInfo,
+                RejectionReason.WRONG_AUDIENCE);
+        assertRejected(sign(header("RS256"), claims()), jwtContextInfo, RejectionReason.WRONG_AUDIENCE);
+    }
+
+    @Test(groups = "validator")
+    public void testThatForgedSignatureIsRejectedBySignature() throws Exception {
+        KeyTool badKeyTool = new KeyTool(getClass().getResource("/bad_key.pem").toURI());
+
+        assertRejected(sign(badKeyTool, header("RS256"), claims()), contextInfo(), RejectionReason.BAD_SIGNATURE);
+    }
+
+    @Test(groups = "validator")
+    public void testThatTruncatedSignatureIsRejectedBySignature() throws Exception {
+        String token = sign(header("RS256"), claims());
+
+        assertRejected(token.substring(0, token.length() - 8), contextInfo(), RejectionReason.BAD_SIGNATURE);
+        assertRejected(token.substring(0, token.lastIndexOf('.') + 1) + "%%%%", contextInfo(),
+                RejectionReason.BAD_SIGNATURE);
+    }
+
+    @Test(groups = "validator")
+    public void testThatFloodRejectionsKeepNoCause() throws Exception {
+        KeyTool badKeyTool = new KeyTool(getClass().getResource("/bad_key.pem").toURI());
+
+        ValidationResult malformed = JWTValidator.validate("not-a-token", contextInfo());
+        Assert.assertEquals(malformed.getReason(), RejectionReason.MALFORMED);
+        Assert.assertNull(malformed.getCause());
+
+        ValidationResult forged = JWTValidator.validate(sign(badKeyTool, header("RS256"), claims()), contextInfo());
+        Assert.assertEquals(forged.getReason(), RejectionReason.BAD_SIGNATURE);
+        Assert.assertNull(forged.getCause());
+    }
+
+    @Test(groups = "validator")
+    public void testThatRepeatedRejectionIsAnsweredFromCache() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        jwtContextInfo.setRejectedTokenCache(new RejectedTokenCache(10, 1, TimeUnit.MINUTES));
+        KeyTool badKeyTool = new KeyTool(getClass().getResource("/bad_key.pem").toURI());
+        String token = sign(badKeyTool, header("RS256"), claims());
+
+        assertRejected(token, jwtContextInfo, RejectionReason.BAD_SIGNATURE);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(JWTValidator.validate(token, jwtContextInfo).getReason(), RejectionReason.BAD_SIGNATURE);
+        }
+
+        Assert.assertEquals(jwtContextInfo.getValidationMetrics().getRejectedCount(RejectionReason.BAD_SIGNATURE), 1);
+        Assert.assertEquals(jwtContextInfo.getRejectedTokenCache().getHitCount(), 3);
+
+        JWTValidator.validateToken(sign(header("RS256"), claims()), jwtContextInfo);
+        Assert.assertEquals(jwtContextInfo.getRejectedTokenCache().size(), 1);
+    }
+
+    @Test(groups = "validator")
+    public void testThatTemporaryRejectionIsNotCached() throws Exception {
+        JWTContextInfo jwtContextInfo = contextInfo();
+        jwtContextInfo.setRejectedTokenCache(new RejectedTokenCache(10, 1, TimeUnit.MINUTES));
+        long now = System.currentTimeMillis() / 1000;
+
+        assertRejected(sign(header("RS256"), claims().add("nbf", now + 3600)), jwtContextInfo,
+                RejectionReason.NOT_YET_VALID);
+        Assert.assertEquals(jwtContextInfo.getRejectedTokenCache().size(), 0);
+    }
+
+    @Test(groups = "validator")
+    public void testThatRejectionIsThrownWithoutStackTrace() throws Exception {
+        try {
+            JWTValidator.validateToken("not-a-token", contextInfo());
+            Assert.fail("Token should have been rejected.");
+        } catch (JWTValidationException e) {
+            Assert.assertEquals(e.getReason(), RejectionReason.MALFORMED);
+            Assert.assertEquals(e.getStage(), ValidationStage.SHAPE);
+            Assert.assertEquals(e.getStackTrace().length, 0);
+        }
+    }
+
+    private static void assertRejected(String token, JWTContextInfo jwtContextInfo, RejectionReason reason) {
+        ValidationMetrics metrics = jwtContextInfo.getValidationMetrics();
+        long rejectedCount = metrics.getRejectedCount();
+        long reasonRejectedCount = metrics.getRejectedCount(reason);
+        long stageRejectedCount = metrics.getRejectedCount(reason.getStage());
+        long acceptedCount = metrics.getAcceptedCount();
+
+        ValidationResult result = JWTValidator.validate(token, jwtContextInfo);
+
+        Assert.assertFalse(result.isAccepted());
+        Assert.assertNull(result.getPrincipal());
+        Assert.assertEquals(result.getReason(), reason);
+        Assert.assertEquals(metrics.getRejectedCount(reason), reasonRejectedCount + 1);
+        Assert.assertEquals(metrics.getRejectedCount(reason.getStage()), stageRejectedCount + 1);
+        Assert.assertEquals(metrics.getRejectedCount(), rejectedCount + 1);
+        Assert.assertEquals(metrics.getAcceptedCount(), acceptedCount);
+    }
+
+    private JWTContextInfo contextInfo() throws URISyntaxException {
+        JWTContextInfo jwtContextInfo = new JWTContextInfo();
+        jwtContextInfo.setDecodedPublicKey(goodKeyTool().getPublicKey());
+        jwtContextInfo.setIssuer(ISSUER);
+        jwtContextInfo.setMaximumLeeway(60);
+        return jwtContextInfo;
+    }
+
+    private KeyTool goodKeyTool() throws URISyntaxException {
+        return new KeyTool(getClass().getResource("/good_key.pem").toURI());
+    }
+
+    private static JsonObjectBuilder header(String algorithm) {
+        return Json.createObjectBuilder()
+                .add("typ", "JWT")
+                .add("alg", algorithm);
+    }
+
+    private static JsonObjectBuilder claims() {
+        long now = System.currentTimeMillis() / 1000;
+        return Json.createObjectBuilder()
+                .add("sub", "FAKE_USER")
+                .add("iss", ISSUER)
+                .add("iat", now)
+                .add("exp", now + 3600);
+    }
+
+    private String sign(JsonObjectBuilder header, JsonObjectBuilder claims) throws URISyntaxException {
+        return sign(goodKeyTool(), header, claims);
+    }
+
+    private static String sign(KeyTool keyTool, JsonObjectBuilder header, JsonObjectBuilder claims) {
+        JsonObject joseHeader = header.build();
+        JsonObject jwtClaims = claims.build();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+        String joseAndClaims = encoder.encodeToString(joseHeader.toString().getBytes(StandardCharsets.UTF_8)) + "." +
+                encoder.encodeToString(jwtClaims.toString().getBytes(StandardCharsets.UTF_8));
+
+        try {
+            Signature sha256withRSA = Signature.getInstance("SHA256withRSA");
+            sha256withRSA.initSign(keyTool.getPrivateKey());
+            sha256withRSA.update(joseAndClaims.getBytes(StandardCharsets.UTF_8));
+
+            return joseAndClaims + "." + encoder.encodeToString(sha256withRSA.sign());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign JWT using SHA256withRSA.", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.jwks;
+
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.HealthCheckResponseBuilder;
+import org.eclipse.microprofile.health.spi.HealthCheckResponseProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Minimal MicroProfile Health response provider, used to call the readiness check without a MicroProfile Health
+ * implementation.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class TestHealthCheckResponseProvider implements HealthCheckResponseProvider {
+
+    @Override
+    public HealthCheckResponseBuilder createResponseBuilder() {
+        return new Builder();
+    }
+
+    private static class Builder extends HealthCheckResponseBuilder {
+
+        private final Map<String, Object> data = new HashMap<>();
+        private String name;
+        private HealthCheckResponse.State state = HealthCheckResponse.State.DOWN;
+
+        @Override
+        public HealthCheckResponseBuilder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public HealthCheckResponseBuilder withData(String key, String value) {
+            data.put(key, value);
+            return this;
+        }
+
+        @Override
+        public HealthCheckResponseBuilder withData(String key, long value) {
+            data.put(key, value);
+            return this;
+        }
+
+        @Override
+        public HealthCheckResponseBuilder withData(String key, boolean value) {
+            data.put(key, value);
+            return this;
+        }
+
+        @Override
+        public HealthCheckResponseBuilder up() {
+            return state(true);
+        }
+
+        @Override
+        public HealthCheckResponseBuilder down() {
+            return state(false);
+        }
+
+        @Override
+        public HealthCheckResponseBuilder state(boolean up) {
+            this.state = up ? HealthCheckResponse.State.UP : HealthCheckResponse.State.DOWN;
+            return this;
+        }
+
+        @Override
+        public HealthCheckResponse build() {
+            final String name = this.name;
+            final HealthCheckResponse.State state = this.state;
+            final Optional<Map<String, Object>> data = this.data.isEmpty() ? Optional.empty() :
+                    Optional.of(new HashMap<>(this.data));
+
+            return new HealthCheckResponse() {
+                @Override
+                public String getName() {
+                    return name;
+                }
+
+                @Override
+                public State getState() {
+                    return state;
+                }
+
+                @Override
+                public Optional<Map<String, Object>> getData() {
+                    return data;
+                }
+            };
+        }
+    }
+}
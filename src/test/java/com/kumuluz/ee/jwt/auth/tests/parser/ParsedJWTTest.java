@@ -0,0 +1,136 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.parser;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.kumuluz.ee.jwt.auth.parser.NodeClaim;
+import com.kumuluz.ee.jwt.auth.parser.ParsedJWT;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Tests single pass decoding of tokens.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ParsedJWTTest {
+
+    private static final Algorithm ALGORITHM = Algorithm.HMAC256("secret");
+
+    @Test(groups = "parser")
+    public void testThatTokenIsDecodedLikeJavaJwt() {
+        String token = JWT.create()
+                .withKeyId("key-1")
+                .withIssuer("https://example.org")
+                .withSubject("24400320")
+                .withAudience("customers", "orders")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60000))
+                .withIssuedAt(new Date())
+                .withJWTId("a-123")
+                .withClaim("customer-id", "c-1")
+                .withClaim("tier", 3)
+                .withClaim("verified", true)
+                .withClaim("realm_access", Collections.singletonMap("roles", Collections.singletonList("admin")))
+                .withArrayClaim("groups", new String[]{"admin", "user"})
+                .sign(ALGORITHM);
+
+        DecodedJWT expected = JWT.decode(token);
+        ParsedJWT parsed = ParsedJWT.parse(token);
+
+        Assert.assertEquals(parsed.getToken(), token);
+        Assert.assertEquals(parsed.getHeader(), expected.getHeader());
+        Assert.assertEquals(parsed.getPayload(), expected.getPayload());
+        Assert.assertEquals(parsed.getSignature(), expected.getSignature());
+        Assert.assertEquals(parsed.getAlgorithm(), "HS256");
+        Assert.assertEquals(parsed.getType(), "JWT");
+        Assert.assertEquals(parsed.getKeyId(), "key-1");
+        Assert.assertEquals(parsed.getIssuer(), expected.getIssuer());
+        Assert.assertEquals(parsed.getSubject(), expected.getSubject());
+        Assert.assertEquals(parsed.getAudience(), expected.getAudience());
+        Assert.assertEquals(parsed.getExpiresAt(), expected.getExpiresAt());
+        Assert.assertEquals(parsed.getIssuedAt(), expected.getIssuedAt());
+        Assert.assertNull(parsed.getNotBefore());
+        Assert.assertEquals(parsed.getId(), expected.getId());
+
+        Assert.assertEquals(parsed.getClaims().keySet(), expected.getClaims().keySet());
+        Assert.assertSame(parsed.getClaims(), parsed.getClaims());
+        Assert.assertEquals(parsed.getClaim("customer-id").asString(), "c-1");
+        Assert.assertEquals(parsed.getClaim("tier").asInt(), Integer.valueOf(3));
+        Assert.assertEquals(parsed.getClaim("tier").asLong(), Long.valueOf(3));
+        Assert.assertNull(parsed.getClaim("tier").asString());
+        Assert.assertTrue(parsed.getClaim("verified").asBoolean());
+        Assert.assertEquals(parsed.getClaim("groups").asList(String.class), expected.getClaim("groups").asList(String.class));
+        Assert.assertEquals(parsed.getClaim("groups").asArray(String.class), new String[]{"admin", "user"});
+        Assert.assertEquals(parsed.getClaim("realm_access").asMap(), expected.getClaim("realm_access").asMap());
+        Assert.assertTrue(((NodeClaim) parsed.getClaim("realm_access")).getNode().isObject());
+        Assert.assertTrue(parsed.getClaim("missing").isNull());
+        Assert.assertTrue(parsed.getHeaderClaim("missing").isNull());
+    }
+
+    @Test(groups = "parser")
+    public void testThatSignatureIsVerifiedOverOriginalToken() {
+        String token = JWT.create().withIssuer("https://example.org").sign(ALGORITHM);
+        JWTVerifier verifier = JWT.require(ALGORITHM).withIssuer("https://example.org").build();
+
+        verifier.verify(ParsedJWT.parse(token));
+
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        Assert.assertThrows(SignatureVerificationException.class, () -> verifier.verify(ParsedJWT.parse(tampered)));
+    }
+
+    @Test(groups = "parser")
+    public void testThatMalformedTokensAreRejected() {
+        String header = encode("{\"alg\":\"HS256\"}");
+
+        assertMalformed(null);
+        assertMalformed("abc");
+        assertMalformed(header + "." + encode("{}"));
+        assertMalformed(header + "." + encode("{}") + ".sig.extra");
+        assertMalformed(header + ".%%%.sig");
+        assertMalformed(header + ".e.sig");
+        assertMalformed(header + "." + encode("not json") + ".sig");
+        assertMalformed(header + "." + encode("{\"sub\":") + ".sig");
+        assertMalformed(header + "." + encode("[1,2]") + ".sig");
+        assertMalformed(header + "." + encode("{\"exp\":\"tomorrow\"}") + ".sig");
+        assertMalformed(header + "." + encode("{\"iss\":42}") + ".sig");
+        assertMalformed(header + "." + encode("{\"aud\":[\"a\",1]}") + ".sig");
+    }
+
+    private static void assertMalformed(String token) {
+        Assert.assertThrows(JWTDecodeException.class, () -> ParsedJWT.parse(token));
+        Assert.assertNull(ParsedJWT.tryParse(token));
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.principal;
+
+import com.kumuluz.ee.jwt.auth.helper.ClaimHelper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests conversion of claim values to JSON-P values.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ClaimHelperTest {
+
+    @Test(groups = "principal")
+    public void testThatScalarsAreWrapped() {
+        Assert.assertEquals(ClaimHelper.convertString("jdoe").getString(), "jdoe");
+        Assert.assertEquals(ClaimHelper.convertNumber(42).longValue(), 42L);
+        Assert.assertTrue(ClaimHelper.convertNumber(42L).isIntegral());
+        Assert.assertEquals(ClaimHelper.convertNumber(4.2).doubleValue(), 4.2);
+        Assert.assertEquals(ClaimHelper.convertBoolean(true), JsonValue.TRUE);
+    }
+
+    @Test(groups = "principal")
+    public void testThatStructuresAreWrapped() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("roles", Arrays.asList("admin", "user"));
+        nested.put("level", 3);
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", "jdoe");
+        map.put("nested", nested);
+
+        JsonObject jsonObject = ClaimHelper.convertMap(map);
+        Assert.assertEquals(jsonObject.getString("name"), "jdoe");
+        Assert.assertEquals(jsonObject.getJsonObject("nested").getJsonArray("roles").getString(1), "user");
+        Assert.assertEquals(jsonObject.getJsonObject("nested").getInt("level"), 3);
+
+        JsonArray jsonArray = ClaimHelper.convertCollection(Arrays.asList("a", 1L, Collections.singletonMap("b", "c")));
+        Assert.assertEquals(jsonArray.getString(0), "a");
+        Assert.assertEquals(jsonArray.getJsonNumber(1).longValue(), 1L);
+        Assert.assertEquals(jsonArray.getJsonObject(2).getString("b"), "c");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.principal;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.kumuluz.ee.jwt.auth.principal.ClaimPath;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.JsonArray;
+import javax.json.JsonString;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Tests compilation and evaluation of nested claim paths.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ClaimPathTest {
+
+    @Test(groups = "principal")
+    public void testThatPathsAreParsed() {
+        Assert.assertEquals(ClaimPath.compile("realm_access.roles").getClaimName(), "realm_access");
+        Assert.assertTrue(ClaimPath.compile("realm_access.roles").isNested());
+        Assert.assertFalse(ClaimPath.compile("groups").isNested());
+        Assert.assertEquals(ClaimPath.compile("/https:~1~1example.com~1roles").getClaimName(), "https://example.com/roles");
+        Assert.assertEquals(ClaimPath.compile("/a~0b/c").getClaimName(), "a~b");
+        Assert.assertTrue(ClaimPath.isPointer("/realm_access/roles"));
+        Assert.assertFalse(ClaimPath.isPointer("realm_access.roles"));
+    }
+
+    @Test(groups = "principal", expectedExceptions = IllegalArgumentException.class)
+    public void testThatEmptySegmentsAreRejected() {
+        ClaimPath.compile("realm_access..roles");
+    }
+
+    @Test(groups = "principal")
+    public void testThatNestedClaimsAreSelected() {
+        JWTPrincipal principal = createPrincipal(null);
+
+        Assert.assertEquals(principal.getClaimAsStringList(ClaimPath.compile("realm_access.roles")),
+                Arrays.asList("admin", "user"));
+        Assert.assertEquals(principal.getClaimAsStringList(ClaimPath.compile("/resource_access/customer-api/roles")),
+                Collections.singletonList("reader"));
+        Assert.assertEquals(((JsonString) principal.getClaimValue(ClaimPath.compile("addresses.1.city"))).getString(),
+                "Maribor");
+        Assert.assertEquals(((JsonArray) principal.getClaimValue(ClaimPath.compile("realm_access.roles"))).size(), 2);
+
+        Assert.assertNull(principal.getClaimValue(ClaimPath.compile("addresses.2.city")));
+        Assert.assertNull(principal.getClaimValue(ClaimPath.compile("addresses.first.city")));
+        Assert.assertNull(principal.getClaimValue(ClaimPath.compile("realm_access.missing")));
+        Assert.assertNull(principal.getClaimValue(ClaimPath.compile("missing.roles")));
+
+        // claims already converted to JSON-P are walked as well
+        principal.getClaimForInjection("realm_access");
+        Assert.assertEquals(principal.getClaimAsStringList(ClaimPath.compile("realm_access.roles")),
+                Arrays.asList("admin", "user"));
+    }
+
+    @Test(groups = "principal")
+    public void testThatGroupsAreReadFromConfiguredPath() {
+        JWTPrincipal principal = createPrincipal(ClaimPath.compile("realm_access.roles"));
+
+        Assert.assertEquals(principal.getGroups(), new HashSet<>(Arrays.asList("admin", "user")));
+        Assert.assertEquals(principal.getClaim("groups"), principal.getGroups());
+        Assert.assertTrue(principal.isInGroup("admin"));
+        Assert.assertFalse(principal.isInGroup("everyone"));
+        Assert.assertEquals(((JsonArray) principal.getClaimForInjection("groups")).size(), 2);
+
+        Assert.assertEquals(createPrincipal(null).getGroups(), Collections.singleton("everyone"));
+        Assert.assertNull(createPrincipal(ClaimPath.compile("realm_access.missing")).getGroups());
+    }
+
+    private static JWTPrincipal createPrincipal(ClaimPath groupsClaimPath) {
+        Map<String, Object> realmAccess = new HashMap<>();
+        realmAccess.put("roles", Arrays.asList("admin", "user"));
+        Map<String, Object> resourceAccess = new HashMap<>();
+        resourceAccess.put("customer-api", Collections.singletonMap("roles", Collections.singletonList("reader")));
+
+        String token = JWT.create()
+                .withClaim("realm_access", realmAccess)
+                .withClaim("resource_access", resourceAccess)
+                .withClaim("addresses", Collections.singletonMap("ignored", "value"))
+                .withArrayClaim("groups", new String[]{"everyone"})
+                .sign(Algorithm.HMAC256("secret"));
+        // java-jwt 3.10 doesn't support array claims of objects, so the payload is patched
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]))
+                .replace("{\"ignored\":\"value\"}", "[{\"city\":\"Ljubljana\"},{\"city\":\"Maribor\"}]");
+        token = parts[0] + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes()) +
+                "." + parts[2];
+
+        return new JWTPrincipal("jdoe", token, JWT.decode(token).getClaims(), groupsClaimPath);
+    }
+}
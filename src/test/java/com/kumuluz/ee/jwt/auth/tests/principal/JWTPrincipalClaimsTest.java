@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.principal;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.kumuluz.ee.jwt.auth.helper.ClaimHelper;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.eclipse.microprofile.jwt.Claims;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.JsonString;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tests lookup of standard and custom claims.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JWTPrincipalClaimsTest {
+
+    @Test(groups = "principal")
+    public void testThatClaimNamesAreResolved() {
+        Assert.assertEquals(ClaimHelper.getClaimType("sub"), Claims.sub);
+        Assert.assertEquals(ClaimHelper.getClaimType("raw_token"), Claims.raw_token);
+        Assert.assertEquals(ClaimHelper.getClaimType("customer-id"), Claims.UNKNOWN);
+        Assert.assertEquals(ClaimHelper.getClaimType("UNKNOWN"), Claims.UNKNOWN);
+        Assert.assertEquals(ClaimHelper.getClaimType(null), Claims.UNKNOWN);
+    }
+
+    @Test(groups = "principal")
+    public void testThatStandardAndCustomClaimsAreRead() {
+        String token = JWT.create()
+                .withSubject("24400320")
+                .withClaim("auth_time", 1500000000L)
+                .withClaim("customer-id", "c-1")
+                .withClaim("UNKNOWN", "custom")
+                .sign(Algorithm.HMAC256("secret"));
+        JWTPrincipal principal = new JWTPrincipal("jdoe", token, JWT.decode(token).getClaims());
+
+        Assert.assertEquals(principal.getClaimNames(),
+                new HashSet<>(Arrays.asList("sub", "auth_time", "customer-id", "UNKNOWN", "raw_token")));
+        Assert.assertEquals(principal.getSubject(), "24400320");
+        Assert.assertEquals(principal.<Long>getClaim("auth_time"), Long.valueOf(1500000000L));
+        Assert.assertEquals(principal.<String>getClaim("customer-id"), "c-1");
+        Assert.assertEquals(principal.<String>getClaim("UNKNOWN"), "custom");
+        Assert.assertEquals(principal.<JsonString>getClaimForInjection("customer-id").getString(), "c-1");
+        Assert.assertEquals(principal.<String>getClaim("raw_token"), token);
+        Assert.assertNull(principal.getClaim("missing"));
+        Assert.assertNull(principal.getClaim("jti"));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.principal;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.Claim;
+import com.kumuluz.ee.jwt.auth.parser.ParsedJWT;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.JsonValue;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Checks that a principal keeps each claim exactly once. The previous representation kept the original, converted and
+ * JSON-P claims side by side; a principal keeps the parsed claim until it is first read and then only its JSON-P
+ * representation.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JWTPrincipalFootprintTest {
+
+    @Test(groups = "principal")
+    public void testThatPrincipalHasSingleClaimStore() {
+        List<Field> claimStores = new ArrayList<>();
+        for (Field field : JWTPrincipal.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) && (Map.class.isAssignableFrom(field.getType()) ||
+                    AtomicReferenceArray.class.isAssignableFrom(field.getType()))) {
+                claimStores.add(field);
+            }
+        }
+
+        // one store for standard claims (by ordinal) and one for custom claims (by name)
+        Assert.assertEquals(claimStores.size(), 2, "Unexpected claim stores: " + claimStores);
+    }
+
+    @Test(groups = "principal")
+    public void testThatClaimsAreStoredOnceBeforeAndAfterConversion() throws Exception {
+        String token = createToken();
+        ParsedJWT jwt = ParsedJWT.parse(token);
+        JWTPrincipal principal = new JWTPrincipal(jwt.getSubject(), token, jwt.getClaims());
+
+        List<Object> storedClaims = getStoredClaims(principal);
+        Assert.assertEquals(storedClaims.size(), jwt.getClaims().size());
+        for (Object storedClaim : storedClaims) {
+            Assert.assertTrue(storedClaim instanceof Claim, "Claim was converted before it was read: " + storedClaim);
+        }
+
+        for (String claimName : principal.getClaimNames()) {
+            principal.getClaim(claimName);
+            principal.getClaimForInjection(claimName);
+        }
+
+        storedClaims = getStoredClaims(principal);
+        Assert.assertEquals(storedClaims.size(), jwt.getClaims().size());
+        for (Object storedClaim : storedClaims) {
+            Assert.assertTrue(storedClaim instanceof JsonValue,
+                    "Parsed claim was kept after it was converted: " + storedClaim);
+        }
+        Assert.assertEquals(principal.getRawToken(), token);
+    }
+
+    private static String createToken() {
+        JWTCreator.Builder builder = JWT.create()
+                .withIssuer("https://example.org/auth/realms/customers")
+                .withSubject("24400320")
+                .withAudience("customers-api")
+                .withJWTId("a-123")
+                .withIssuedAt(new Date())
+                .withExpiresAt(new Date(System.currentTimeMillis() + 300000))
+                .withClaim("auth_time", System.currentTimeMillis() / 1000)
+                .withClaim("upn", "jdoe@example.org")
+                .withClaim("preferred_username", "jdoe")
+                .withClaim("email_verified", true)
+                .withArrayClaim("groups", new String[]{"customers", "orders", "admin", "support", "billing"});
+
+        for (int i = 0; i < 20; i++) {
+            builder.withClaim("custom-claim-" + i, "custom value " + i);
+        }
+
+        return builder.sign(Algorithm.HMAC256("secret"));
+    }
+
+    /**
+     * @return all values held by the claim stores of the principal, the raw token is not one of them
+     */
+    private static List<Object> getStoredClaims(JWTPrincipal principal) throws ReflectiveOperationException {
+        List<Object> storedClaims = new ArrayList<>();
+
+        Field standardClaimsField = JWTPrincipal.class.getDeclaredField("standardClaims");
+        standardClaimsField.setAccessible(true);
+        AtomicReferenceArray<?> standardClaims = (AtomicReferenceArray<?>) standardClaimsField.get(principal);
+        for (int i = 0; i < standardClaims.length(); i++) {
+            if (standardClaims.get(i) != null) {
+                storedClaims.add(standardClaims.get(i));
+            }
+        }
+
+        Field customClaimsField = JWTPrincipal.class.getDeclaredField("customClaims");
+        customClaimsField.setAccessible(true);
+        storedClaims.addAll(((Map<?, ?>) customClaimsField.get(principal)).values());
+
+        return storedClaims;
+    }
+}
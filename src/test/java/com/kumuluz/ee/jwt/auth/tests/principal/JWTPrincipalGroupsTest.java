@@ -0,0 +1,78 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.principal;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.kumuluz.ee.jwt.auth.context.JWTSecurityContext;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+
+/**
+ * Tests the groups of a principal and role checks.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JWTPrincipalGroupsTest {
+
+    @Test(groups = "principal")
+    public void testThatGroupsAreComputedOnce() {
+        JWTPrincipal principal = createPrincipal(JWT.create().withArrayClaim("groups", new String[]{"admin", "user"}));
+
+        Set<String> groups = principal.getGroups();
+        Assert.assertSame(principal.getGroups(), groups);
+        Assert.assertEquals(groups.size(), 2);
+        Assert.assertTrue(principal.isInGroup("admin"));
+        Assert.assertFalse(principal.isInGroup("billing"));
+
+        JWTSecurityContext securityContext = new JWTSecurityContext(null, principal);
+        Assert.assertTrue(securityContext.isUserInRole("user"));
+        Assert.assertFalse(securityContext.isUserInRole("billing"));
+    }
+
+    @Test(groups = "principal", expectedExceptions = UnsupportedOperationException.class)
+    public void testThatGroupsAreImmutable() {
+        JWTPrincipal principal = createPrincipal(JWT.create().withArrayClaim("groups", new String[]{"admin"}));
+
+        principal.getGroups().add("billing");
+    }
+
+    @Test(groups = "principal")
+    public void testThatMissingGroupsAreHandled() {
+        JWTPrincipal principal = createPrincipal(JWT.create().withSubject("jdoe"));
+
+        Assert.assertNull(principal.getGroups());
+        Assert.assertFalse(principal.isInGroup("admin"));
+        Assert.assertFalse(new JWTSecurityContext(null, principal).isUserInRole("admin"));
+    }
+
+    private static JWTPrincipal createPrincipal(JWTCreator.Builder builder) {
+        String token = builder.sign(Algorithm.HMAC256("secret"));
+        DecodedJWT jwt = JWT.decode(token);
+        return new JWTPrincipal("jdoe", token, jwt.getClaims());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.principal;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.Claim;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests that claims are converted on first access and that the converted claims are memoized.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class JWTPrincipalMemoizationTest {
+
+    @Test(groups = "principal")
+    public void testThatClaimsAreNotConvertedUntilRead() {
+        Map<String, CountingClaim> claims = countingClaims();
+        new JWTPrincipal("jdoe", "token", new HashMap<>(claims));
+
+        for (CountingClaim claim : claims.values()) {
+            Assert.assertEquals(claim.getConversionCount(), 0);
+        }
+    }
+
+    @Test(groups = "principal")
+    public void testThatConvertedClaimsAreMemoized() {
+        Map<String, CountingClaim> claims = countingClaims();
+        JWTPrincipal principal = new JWTPrincipal("jdoe", "token", new HashMap<>(claims));
+
+        JsonValue customerId = principal.getClaimForInjection("customer-id");
+        int conversions = claims.get("customer-id").getConversionCount();
+        Assert.assertTrue(conversions > 0);
+        Assert.assertEquals(((JsonString) customerId).getString(), "c-1");
+
+        Assert.assertSame(principal.getClaimForInjection("customer-id"), customerId);
+        Assert.assertEquals(principal.<String>getClaim("customer-id"), "c-1");
+        Assert.assertEquals(claims.get("customer-id").getConversionCount(), conversions);
+
+        JsonValue tokenId = principal.getClaimForInjection("jti");
+        conversions = claims.get("jti").getConversionCount();
+        Assert.assertTrue(conversions > 0);
+
+        Assert.assertSame(principal.getClaimForInjection("jti"), tokenId);
+        Assert.assertEquals(principal.getTokenID(), "a-123");
+        Assert.assertEquals(claims.get("jti").getConversionCount(), conversions);
+
+        // claims which are never read are never converted
+        Assert.assertEquals(claims.get("sub").getConversionCount(), 0);
+        Assert.assertEquals(claims.get("tenant").getConversionCount(), 0);
+    }
+
+    private static Map<String, CountingClaim> countingClaims() {
+        String token = JWT.create()
+                .withSubject("24400320")
+                .withJWTId("a-123")
+                .withClaim("customer-id", "c-1")
+                .withClaim("tenant", "t-1")
+                .sign(Algorithm.HMAC256("secret"));
+
+        Map<String, CountingClaim> claims = new HashMap<>();
+        JWT.decode(token).getClaims().forEach((name, claim) -> claims.put(name, new CountingClaim(claim)));
+
+        return claims;
+    }
+
+    /**
+     * Claim which counts how many times its value has been read.
+     */
+    private static class CountingClaim implements Claim {
+
+        private final Claim claim;
+        private final AtomicInteger conversionCount = new AtomicInteger();
+
+        CountingClaim(Claim claim) {
+            this.claim = claim;
+        }
+
+        int getConversionCount() {
+            return conversionCount.get();
+        }
+
+        @Override
+        public boolean isNull() {
+            return claim.isNull();
+        }
+
+        @Override
+        public Boolean asBoolean() {
+            conversionCount.incrementAndGet();
+            return claim.asBoolean();
+        }
+
+        @Override
+        public Integer asInt() {
+            conversionCount.incrementAndGet();
+            return claim.asInt();
+        }
+
+        @Override
+        public Long asLong() {
+            conversionCount.incrementAndGet();
+            return claim.asLong();
+        }
+
+        @Override
+        public Double asDouble() {
+            conversionCount.incrementAndGet();
+            return claim.asDouble();
+        }
+
+        @Override
+        public String asString() {
+            conversionCount.incrementAndGet();
+            return claim.asString();
+        }
+
+        @Override
+        public Date asDate() {
+            conversionCount.incrementAndGet();
+            return claim.asDate();
+        }
+
+        @Override
+        public <T> T[] asArray(Class<T> tClazz) {
+            conversionCount.incrementAndGet();
+            return claim.asArray(tClazz);
+        }
+
+        @Override
+        public <T> List<T> asList(Class<T> tClazz) {
+            conversionCount.incrementAndGet();
+            return claim.asList(tClazz);
+        }
+
+        @Override
+        public Map<String, Object> asMap() {
+            conversionCount.incrementAndGet();
+            return claim.asMap();
+        }
+
+        @Override
+        public <T> T as(Class<T> tClazz) {
+            conversionCount.incrementAndGet();
+            return claim.as(tClazz);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.kumuluz.ee.jwt.auth.tests.projection;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.kumuluz.ee.jwt.auth.principal.JWTPrincipal;
+import com.kumuluz.ee.jwt.auth.projection.ClaimBinders;
+import com.kumuluz.ee.jwt.auth.projection.ClaimProjection;
+import org.eclipse.microprofile.jwt.Claim;
+import org.eclipse.microprofile.jwt.Claims;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Tests projection of claims with generated and reflective binders.
+ *
+ * @author Benjamin Kastelic
+ * @since 1.2.0
+ */
+public class ClaimProjectionTest {
+
+    @ClaimProjection
+    static class CustomerClaims {
+        @Claim(standard = Claims.sub)
+        String subject;
+        @Claim("customer-id")
+        String customerId;
+        long tier;
+        int visits;
+        boolean verified;
+        Double rating;
+        Set<String> groups;
+        @Claim(standard = Claims.aud)
+        List<String> audience;
+        Optional<String> nickname;
+        static String ignored;
+    }
+
+    @ClaimProjection
+    private static class PrivateCustomerClaims {
+        @Claim("customer-id")
+        private String customerId;
+        private long tier;
+        private Optional<Boolean> verified;
+    }
+
+    @ClaimProjection
+    interface CustomerView {
+        @Claim("customer-id")
+        String getCustomerId();
+
+        long getTier();
+
+        boolean isVerified();
+
+        Optional<Long> getVisits();
+
+        default String getDisplayName() {
+            return getCustomerId() + " (" + getTier() + ")";
+        }
+    }
+
+    @ClaimProjection
+    private interface PrivateCustomerView {
+        @Claim("customer-id")
+        String getCustomerId();
+
+        Set<String> getGroups();
+    }
+
+    static class NotAProjection {
+        String customerId;
+    }
+
+    @Test(groups = "projection")
+    public void testThatClassIsBoundWithGeneratedBinder() {
+        Assert.assertEquals(ClaimBinders.get(CustomerClaims.class).getClass().getName(),
+                ClaimProjectionTest.class.getName() + "_CustomerClaims_ClaimBinder");
+
+        CustomerClaims claims = ClaimBinders.project(createPrincipal(), CustomerClaims.class);
+
+        Assert.assertEquals(claims.subject, "24400320");
+        Assert.assertEquals(claims.customerId, "c-1");
+        Assert.assertEquals(claims.tier, 3L);
+        Assert.assertEquals(claims.visits, 0);
+        Assert.assertTrue(claims.verified);
+        Assert.assertEquals(claims.rating, 4.5);
+        Assert.assertEquals(claims.groups, new HashSet<>(Arrays.asList("admin", "user")));
+        Assert.assertEquals(claims.audience, Collections.singletonList("customers"));
+        Assert.assertFalse(claims.nickname.isPresent());
+    }
+
+    @Test(groups = "projection")
+    public void testThatInterfaceIsBoundWithGeneratedBinder() {
+        Assert.assertEquals(ClaimBinders.get(CustomerView.class).getClass().getName(),
+                ClaimProjectionTest.class.getName() + "_CustomerView_ClaimBinder");
+
+        CustomerView view = ClaimBinders.project(createPrincipal(), CustomerView.class);
+
+        Assert.assertEquals(view.getCustomerId(), "c-1");
+        Assert.assertEquals(view.getTier(), 3L);
+        Assert.assertTrue(view.isVerified());
+        Assert.assertFalse(view.getVisits().isPresent());
+        Assert.assertEquals(view.getDisplayName(), "c-1 (3)");
+    }
+
+    @Test(groups = "projection")
+    public void testThatInaccessibleTypesAreBoundReflectively() {
+        Assert.assertFalse(ClaimBinders.get(PrivateCustomerClaims.class).getClass().getName().endsWith("_ClaimBinder"));
+        Assert.assertFalse(ClaimBinders.get(PrivateCustomerView.class).getClass().getName().endsWith("_ClaimBinder"));
+        Assert.assertSame(ClaimBinders.get(PrivateCustomerClaims.class), ClaimBinders.get(PrivateCustomerClaims.class));
+
+        JWTPrincipal principal = createPrincipal();
+        // claims already converted to JSON-P are read from their JSON-P representation
+        principal.getGroups();
+
+        PrivateCustomerClaims claims = ClaimBinders.project(principal, PrivateCustomerClaims.class);
+        Assert.assertEquals(claims.customerId, "c-1");
+        Assert.assertEquals(claims.tier, 3L);
+        Assert.assertEquals(claims.verified, Optional.of(true));
+
+        PrivateCustomerView view = ClaimBinders.project(principal, PrivateCustomerView.class);
+        Assert.assertEquals(view.getCustomerId(), "c-1");
+        Assert.assertEquals(view.getGroups(), new HashSet<>(Arrays.asList("admin", "user")));
+        Assert.assertEquals(view, view);
+    }
+
+    @Test(groups = "projection")
+    public void testThatMissingTokenIsProjectedAsNull() {
+        Assert.assertNull(ClaimBinders.project(null, CustomerClaims.class));
+    }
+
+    @Test(groups = "projection", expectedExceptions = IllegalArgumentException.class)
+    public void testThatTypeWithoutAnnotationIsRejected() {
+        ClaimBinders.get(NotAProjection.class);
+    }
+
+    private static JWTPrincipal createPrincipal() {
+        String token = JWT.create()
+                .withSubject("24400320")
+                .withAudience("customers")
+                .withClaim("customer-id", "c-1")
+                .withClaim("tier", 3)
+                .withClaim("verified", true)
+                .withClaim("rating", 4.5)
+                .withArrayClaim("groups", new String[]{"admin", "user"})
+                .sign(Algorithm.HMAC256("secret"));
+        return new JWTPrincipal("jdoe", token, JWT.decode(token).getClaims());
+    }
+}